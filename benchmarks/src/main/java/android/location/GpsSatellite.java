@@ -0,0 +1,29 @@
+/*
+ * Minimal stand-in for the Android class of the same name so the plugin sources compile and
+ * run on a stock JDK. Only what the benchmarked code touches is implemented.
+ */
+package android.location;
+
+public final class GpsSatellite {
+    private final int mPrn;
+    private final float mSnr;
+    private final float mElevation;
+    private final float mAzimuth;
+    private final boolean mUsedInFix;
+
+    public GpsSatellite(int prn, float snr, float elevation, float azimuth, boolean usedInFix) {
+        mPrn = prn;
+        mSnr = snr;
+        mElevation = elevation;
+        mAzimuth = azimuth;
+        mUsedInFix = usedInFix;
+    }
+
+    public int getPrn() { return mPrn; }
+    public float getSnr() { return mSnr; }
+    public float getElevation() { return mElevation; }
+    public float getAzimuth() { return mAzimuth; }
+    public boolean hasEphemeris() { return true; }
+    public boolean hasAlmanac() { return true; }
+    public boolean usedInFix() { return mUsedInFix; }
+}
@@ -0,0 +1,18 @@
+/*
+ * Minimal stand-in for the Android class of the same name so the plugin sources compile and
+ * run on a stock JDK. Only what the benchmarked code touches is implemented.
+ */
+package android.location;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class GpsStatus {
+    private final List<GpsSatellite> mSatellites = new ArrayList<GpsSatellite>();
+    private int mTimeToFirstFix;
+
+    public void add(GpsSatellite satellite) { mSatellites.add(satellite); }
+    public void setTimeToFirstFix(int ttff) { mTimeToFirstFix = ttff; }
+    public int getTimeToFirstFix() { return mTimeToFirstFix; }
+    public Iterable<GpsSatellite> getSatellites() { return mSatellites; }
+}
@@ -0,0 +1,41 @@
+/*
+ * Minimal stand-in for the Android class of the same name so the plugin sources compile and
+ * run on a stock JDK. Only what the benchmarked code touches is implemented.
+ */
+package android.location;
+
+import android.os.Bundle;
+
+public class Location {
+    private final String mProvider;
+    private long mTime;
+    private double mLatitude;
+    private double mLongitude;
+    private double mAltitude;
+    private float mSpeed;
+    private float mBearing;
+    private float mAccuracy;
+    private Bundle mExtras = new Bundle();
+
+    public Location(String provider) {
+        mProvider = provider;
+    }
+
+    public String getProvider() { return mProvider; }
+    public long getTime() { return mTime; }
+    public void setTime(long time) { mTime = time; }
+    public double getLatitude() { return mLatitude; }
+    public void setLatitude(double latitude) { mLatitude = latitude; }
+    public double getLongitude() { return mLongitude; }
+    public void setLongitude(double longitude) { mLongitude = longitude; }
+    public double getAltitude() { return mAltitude; }
+    public void setAltitude(double altitude) { mAltitude = altitude; }
+    public float getSpeed() { return mSpeed; }
+    public void setSpeed(float speed) { mSpeed = speed; }
+    public float getBearing() { return mBearing; }
+    public void setBearing(float bearing) { mBearing = bearing; }
+    public float getAccuracy() { return mAccuracy; }
+    public void setAccuracy(float accuracy) { mAccuracy = accuracy; }
+    public Bundle getExtras() { return mExtras; }
+    public void setExtras(Bundle extras) { mExtras = extras; }
+}
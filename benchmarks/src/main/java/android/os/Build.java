@@ -0,0 +1,17 @@
+/*
+ * Minimal stand-in for the Android class of the same name so the plugin sources compile and
+ * run on a stock JDK. Only what the benchmarked code touches is implemented.
+ */
+package android.os;
+
+public class Build {
+    public static class VERSION {
+        public static final int SDK_INT = 24;
+    }
+
+    public static class VERSION_CODES {
+        public static final int JELLY_BEAN_MR2 = 18;
+        public static final int M = 23;
+        public static final int N = 24;
+    }
+}
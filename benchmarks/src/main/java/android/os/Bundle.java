@@ -0,0 +1,20 @@
+/*
+ * Minimal stand-in for the Android class of the same name so the plugin sources compile and
+ * run on a stock JDK. Only what the benchmarked code touches is implemented.
+ */
+package android.os;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+public final class Bundle {
+    private final Map<String, Object> mMap = new LinkedHashMap<String, Object>();
+
+    public void putInt(String key, int value) { mMap.put(key, value); }
+    public Object get(String key) { return mMap.get(key); }
+    public Set<String> keySet() { return mMap.keySet(); }
+
+    @Override
+    public String toString() { return "Bundle[" + mMap + "]"; }
+}
@@ -0,0 +1,13 @@
+/*
+ * Minimal stand-in for the Android class of the same name so the plugin sources compile and
+ * run on a stock JDK. Only what the benchmarked code touches is implemented.
+ */
+package android.telephony;
+
+public final class CellIdentityCdma {
+    public int getSystemId() { return 0; }
+    public int getNetworkId() { return 0; }
+    public int getLongitude() { return 0; }
+    public int getLatitude() { return 0; }
+    public int getBasestationId() { return 0; }
+}
@@ -0,0 +1,12 @@
+/*
+ * Minimal stand-in for the Android class of the same name so the plugin sources compile and
+ * run on a stock JDK. Only what the benchmarked code touches is implemented.
+ */
+package android.telephony;
+
+public final class CellIdentityGsm {
+    public int getMnc() { return 0; }
+    public int getMcc() { return 0; }
+    public int getLac() { return 0; }
+    public int getCid() { return 0; }
+}
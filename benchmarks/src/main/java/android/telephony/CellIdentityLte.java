@@ -0,0 +1,13 @@
+/*
+ * Minimal stand-in for the Android class of the same name so the plugin sources compile and
+ * run on a stock JDK. Only what the benchmarked code touches is implemented.
+ */
+package android.telephony;
+
+public final class CellIdentityLte {
+    public int getTac() { return 0; }
+    public int getPci() { return 0; }
+    public int getMnc() { return 0; }
+    public int getMcc() { return 0; }
+    public int getCi() { return 0; }
+}
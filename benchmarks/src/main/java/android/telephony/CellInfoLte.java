@@ -0,0 +1,10 @@
+/*
+ * Minimal stand-in for the Android class of the same name so the plugin sources compile and
+ * run on a stock JDK. Only what the benchmarked code touches is implemented.
+ */
+package android.telephony;
+
+public final class CellInfoLte {
+    public CellIdentityLte getCellIdentity() { return new CellIdentityLte(); }
+    public CellSignalStrengthLte getCellSignalStrength() { return new CellSignalStrengthLte(); }
+}
@@ -0,0 +1,10 @@
+/*
+ * Minimal stand-in for the Android class of the same name so the plugin sources compile and
+ * run on a stock JDK. Only what the benchmarked code touches is implemented.
+ */
+package android.telephony;
+
+public final class CellInfoWcdma {
+    public CellIdentityWcdma getCellIdentity() { return new CellIdentityWcdma(); }
+    public CellSignalStrengthWcdma getCellSignalStrength() { return new CellSignalStrengthWcdma(); }
+}
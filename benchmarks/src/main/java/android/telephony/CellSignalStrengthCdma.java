@@ -0,0 +1,18 @@
+/*
+ * Minimal stand-in for the Android class of the same name so the plugin sources compile and
+ * run on a stock JDK. Only what the benchmarked code touches is implemented.
+ */
+package android.telephony;
+
+public final class CellSignalStrengthCdma {
+    public int getLevel() { return 0; }
+    public int getEvdoSnr() { return 0; }
+    public int getEvdoLevel() { return 0; }
+    public int getEvdoEcio() { return 0; }
+    public int getEvdoDbm() { return 0; }
+    public int getDbm() { return 0; }
+    public int getCdmaLevel() { return 0; }
+    public int getCdmaEcio() { return 0; }
+    public int getCdmaDbm() { return 0; }
+    public int getAsuLevel() { return 0; }
+}
@@ -0,0 +1,11 @@
+/*
+ * Minimal stand-in for the Android class of the same name so the plugin sources compile and
+ * run on a stock JDK. Only what the benchmarked code touches is implemented.
+ */
+package android.telephony;
+
+public final class CellSignalStrengthGsm {
+    public int getLevel() { return 0; }
+    public int getDbm() { return 0; }
+    public int getAsuLevel() { return 0; }
+}
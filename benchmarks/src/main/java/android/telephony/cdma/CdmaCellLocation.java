@@ -0,0 +1,14 @@
+/*
+ * Minimal stand-in for the Android class of the same name so the plugin sources compile and
+ * run on a stock JDK. Only what the benchmarked code touches is implemented.
+ */
+package android.telephony.cdma;
+
+public class CdmaCellLocation {
+    public static double convertQuartSecToDecDegrees(int quartSec) { return quartSec / (3600.0 * 4.0); }
+    public int getSystemId() { return 0; }
+    public int getNetworkId() { return 0; }
+    public int getBaseStationLongitude() { return 0; }
+    public int getBaseStationLatitude() { return 0; }
+    public int getBaseStationId() { return 0; }
+}
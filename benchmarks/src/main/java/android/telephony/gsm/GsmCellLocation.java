@@ -0,0 +1,11 @@
+/*
+ * Minimal stand-in for the Android class of the same name so the plugin sources compile and
+ * run on a stock JDK. Only what the benchmarked code touches is implemented.
+ */
+package android.telephony.gsm;
+
+public class GsmCellLocation {
+    public int getPsc() { return 0; }
+    public int getLac() { return 0; }
+    public int getCid() { return 0; }
+}
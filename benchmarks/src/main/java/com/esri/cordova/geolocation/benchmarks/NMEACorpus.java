@@ -0,0 +1,87 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.benchmarks;
+
+import java.util.Locale;
+
+/**
+ * Representative multi-constellation NMEA 4.1 output of an RTK receiver tracking GPS, GLONASS,
+ * Galileo and BeiDou: one epoch is 20 sentences with per-constellation GSA and GSV.
+ */
+public final class NMEACorpus {
+
+    public static final String TIME = "092751.00";
+
+    public static final String GGA = "$GNGGA,092751.00,5321.6802730,N,00630.3371940,W,4,31,0.6,52.117,M,55.210,M,1.0,0000*76";
+    public static final String GSA = "$GNGSA,A,3,02,05,07,09,13,15,18,20,29,30,,,1.1,0.6,0.9,1*32";
+    public static final String GST = "$GPGST,092751.00,0.52,0.012,0.009,34.5,0.011,0.009,0.021*5A";
+    public static final String VTG = "$GNVTG,54.7,T,58.1,M,0.021,N,0.039,K,R*2D";
+    public static final String RMC = "$GNRMC,092751.00,A,5321.6802730,N,00630.3371940,W,0.021,54.7,191116,3.4,W,R,V*74";
+    public static final String ZDA = "$GNZDA,092751.00,19,11,2016,00,00*7D";
+
+    public static final String[] EPOCH = {
+            GGA,
+            GSA,
+            "$GNGSA,A,3,65,66,72,73,74,81,82,,,,,,1.1,0.6,0.9,2*3F",
+            "$GNGSA,A,3,303,305,311,312,319,,,,,,,,1.1,0.6,0.9,3*02",
+            "$GNGSA,A,3,401,403,406,409,416,421,,,,,,,1.1,0.6,0.9,4*32",
+            GST,
+            VTG,
+            RMC,
+            ZDA,
+            "$GPGSV,3,1,10,02,67,289,47,05,41,085,44,07,22,312,39,09,15,250,35,1*68",
+            "$GPGSV,3,2,10,13,58,076,46,15,12,180,33,18,35,140,41,20,48,210,44,1*64",
+            "$GPGSV,3,3,10,29,19,040,37,30,71,160,48,1*68",
+            "$GLGSV,2,1,07,65,33,270,42,66,61,010,45,72,18,300,36,73,29,150,40,1*7E",
+            "$GLGSV,2,2,07,74,52,080,44,81,12,330,31,82,44,220,43,1*46",
+            "$GAGSV,2,1,05,03,61,110,46,05,27,260,41,11,39,040,43,12,16,190,35,7*71",
+            "$GAGSV,2,2,05,19,48,300,45,7*40",
+            "$GBGSV,2,1,06,01,35,140,38,03,52,190,40,06,21,070,34,09,64,260,44,1*78",
+            "$GBGSV,2,2,06,16,30,320,37,21,44,010,41,1*76",
+            "$GNGNS,092751.00,5321.6802730,N,00630.3371940,W,RRRR,31,0.6,52.117,55.210,1.0,0000,V*23",
+            "$GNGLL,5321.6802730,N,00630.3371940,W,092751.00,A,R*7D",
+    };
+
+    private NMEACorpus() {
+    }
+
+    /**
+     * @return count consecutive 10 Hz epochs, flattened, with valid checksums
+     */
+    public static String[] epochs(int count) {
+        final String[] sentences = new String[count * EPOCH.length];
+        for (int e = 0; e < count; e++) {
+            final int tenths = 92751 * 10 + e; // hhmmss * 10 + tenths, no rollover in a benchmark run
+            final int seconds = 9 * 3600 + 27 * 60 + 51 + e / 10;
+            final String time = String.format(Locale.US, "%02d%02d%02d.%d0",
+                    seconds / 3600, seconds / 60 % 60, seconds % 60, tenths % 10);
+            for (int i = 0; i < EPOCH.length; i++) {
+                sentences[e * EPOCH.length + i] = withChecksum(EPOCH[i].replace(TIME, time));
+            }
+        }
+        return sentences;
+    }
+
+    static String withChecksum(String sentence) {
+        final int star = sentence.lastIndexOf('*');
+        int checksum = 0;
+        for (int i = 1; i < star; i++) {
+            checksum ^= sentence.charAt(i);
+        }
+        return sentence.substring(0, star + 1) + String.format(Locale.US, "%02X", checksum);
+    }
+}
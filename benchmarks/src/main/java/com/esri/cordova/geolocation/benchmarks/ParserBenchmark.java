@@ -0,0 +1,207 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.benchmarks;
+
+import com.esri.cordova.geolocation.model.NMEAEpoch;
+import com.esri.cordova.geolocation.model.NMEAOptions;
+import com.esri.cordova.geolocation.utils.GPSLocation;
+import com.esri.cordova.geolocation.utils.NMEAEngine;
+import com.esri.cordova.geolocation.utils.NMEAParserRegistry;
+import com.esri.cordova.geolocation.utils.NMEAPipeline;
+import com.esri.cordova.geolocation.utils.NMEASentence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parser throughput per sentence. Each parse benchmark starts from a cleared epoch, as the
+ * first sentence of an epoch does on the device. Run with -prof gc for the allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParserBenchmark {
+
+    private static final int CORPUS_EPOCHS = 100;
+
+    private final GPSLocation location = new GPSLocation();
+    private final NMEAParserRegistry parsers = NMEAParserRegistry.createDefault();
+    private final NMEASentence tokenizer = new NMEASentence();
+    private final NMEASentence gga = new NMEASentence();
+    private final NMEASentence gsa = new NMEASentence();
+    private final NMEASentence gst = new NMEASentence();
+    private final NMEASentence vtg = new NMEASentence();
+    private final NMEASentence zda = new NMEASentence();
+    private final NMEASentence rmc = new NMEASentence();
+
+    private String[] corpus;
+    private NMEAPipeline pipeline;
+    private NMEAEngine engine;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup(Blackhole bh) {
+        gga.reset(NMEACorpus.GGA);
+        gsa.reset(NMEACorpus.GSA);
+        gst.reset(NMEACorpus.GST);
+        vtg.reset(NMEACorpus.VTG);
+        zda.reset(NMEACorpus.ZDA);
+        rmc.reset(NMEACorpus.RMC);
+        corpus = NMEACorpus.epochs(CORPUS_EPOCHS);
+        blackhole = bh;
+        pipeline = new NMEAPipeline(location, parsers, new NMEAPipeline.Sink() {
+            @Override
+            public void epoch(NMEAEpoch epoch, long timestamp) {
+                blackhole.consume(epoch);
+                location.recycle(epoch);
+            }
+        });
+        engine = new NMEAEngine(new NMEAOptions(), 0, new NMEAEngine.Transport() {
+            @Override
+            public void send(String json) {
+                blackhole.consume(json);
+            }
+
+            @Override
+            public void send(byte[] data) {
+                blackhole.consume(data);
+            }
+        }, new NMEAEngine.Scheduler() {
+            @Override
+            public void post(Runnable task, long delayMs) {
+            }
+
+            @Override
+            public void cancel(Runnable task) {
+            }
+
+            @Override
+            public long uptimeMillis() {
+                return System.nanoTime() / 1000000L;
+            }
+        });
+    }
+
+    @Benchmark
+    public boolean tokenize() {
+        return tokenizer.reset(NMEACorpus.GGA);
+    }
+
+    /**
+     * Sentence type dispatch, the successor of GPSLocation.messageType().
+     */
+    @Benchmark
+    @OperationsPerInvocation(20)
+    public void lookup(Blackhole bh) {
+        final String[] epoch = NMEACorpus.EPOCH;
+        for (int i = 0; i < epoch.length; i++) {
+            tokenizer.reset(epoch[i]);
+            bh.consume(parsers.lookup(tokenizer));
+        }
+    }
+
+    /**
+     * Epoch key of two timed sentences, the successor of GPSLocation.getUTC() and checkUTC().
+     */
+    @Benchmark
+    public boolean timeOfDay() {
+        return gga.parseTimeOfDay(1) == rmc.parseTimeOfDay(1);
+    }
+
+    @Benchmark
+    public NMEAEpoch parseGGA() {
+        location.clear();
+        location.parseGGA(gga);
+        return location.getEpoch();
+    }
+
+    @Benchmark
+    public NMEAEpoch parseGSA() {
+        location.clear();
+        location.parseGSA(gsa);
+        return location.getEpoch();
+    }
+
+    @Benchmark
+    public NMEAEpoch parseGST() {
+        location.clear();
+        location.parseGST(gst);
+        return location.getEpoch();
+    }
+
+    @Benchmark
+    public NMEAEpoch parseVTG() {
+        location.clear();
+        location.parseVTG(vtg);
+        return location.getEpoch();
+    }
+
+    @Benchmark
+    public NMEAEpoch parseZDA() {
+        location.clear();
+        location.parseZDA(zda);
+        return location.getEpoch();
+    }
+
+    @Benchmark
+    public NMEAEpoch parseRMC() {
+        location.clear();
+        location.parseRMC(rmc);
+        return location.getEpoch();
+    }
+
+    /**
+     * Tokenize, dispatch, epoch assembly and parsing for 100 epochs of 20 sentences each.
+     * Reported per sentence.
+     */
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_EPOCHS * 20)
+    public void pipeline() {
+        final String[] sentences = corpus;
+        for (int i = 0; i < sentences.length; i++) {
+            pipeline.process(sentences[i], i);
+        }
+    }
+
+    /**
+     * The whole hot path GPSController runs on the parser thread: the pipeline plus the JSON
+     * payload of every epoch. Reported per sentence.
+     */
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_EPOCHS * 20)
+    public void engine() {
+        final String[] sentences = corpus;
+        for (int i = 0; i < sentences.length; i++) {
+            engine.process(sentences[i], i);
+        }
+    }
+}
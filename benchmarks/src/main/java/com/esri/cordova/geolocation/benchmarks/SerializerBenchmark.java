@@ -0,0 +1,144 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.benchmarks;
+
+import android.location.GpsSatellite;
+import android.location.GpsStatus;
+import android.location.Location;
+
+import com.esri.cordova.geolocation.model.NMEAEpoch;
+import com.esri.cordova.geolocation.utils.GPSLocation;
+import com.esri.cordova.geolocation.utils.JSONHelper;
+import com.esri.cordova.geolocation.utils.JSONWriter;
+import com.esri.cordova.geolocation.utils.NMEABinaryEncoder;
+import com.esri.cordova.geolocation.utils.NMEAParserRegistry;
+import com.esri.cordova.geolocation.utils.NMEASentence;
+import com.esri.cordova.geolocation.utils.SatelliteFeed;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializer throughput per payload, using a complete multi-constellation epoch and Location and
+ * GpsStatus objects from the android stubs. Run with -prof gc for the allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializerBenchmark {
+
+    private final GPSLocation location = new GPSLocation();
+    private final JSONWriter writer = new JSONWriter();
+    private final NMEABinaryEncoder encoder = new NMEABinaryEncoder();
+    private final ArrayList<String> errors = new ArrayList<String>();
+    private final ArrayList<String> types = new ArrayList<String>();
+    private NMEAEpoch epoch;
+    private Location androidLocation;
+    private GpsStatus gpsStatus;
+    private final SatelliteFeed satelliteFeed = new SatelliteFeed(0);
+    private final int[] prns = {2, 5, 7, 9, 13, 15, 18, 20, 29, 30, 65, 66, 72, 73, 74, 81, 82,
+            303, 305, 311, 312, 319, 401, 403, 406, 409, 416, 421};
+
+    @Setup
+    public void setup() {
+        final NMEAParserRegistry parsers = NMEAParserRegistry.createDefault();
+        final NMEASentence sentence = new NMEASentence();
+        for (String s : NMEACorpus.EPOCH) {
+            sentence.reset(s);
+            location.addSentence(s);
+            final NMEAParserRegistry.Entry entry = parsers.lookup(sentence);
+            if (entry != null) {
+                entry.parser.parse(sentence, location);
+            }
+        }
+        epoch = location.getEpoch();
+
+        androidLocation = new Location("gps");
+        androidLocation.setTime(1479547671000L);
+        androidLocation.setLatitude(53.36133788);
+        androidLocation.setLongitude(-6.50561990);
+        androidLocation.setAltitude(52.117);
+        androidLocation.setAccuracy(3.9f);
+        androidLocation.setBearing(54.7f);
+        androidLocation.setSpeed(0.011f);
+        androidLocation.getExtras().putInt("satellites", 31);
+
+        gpsStatus = new GpsStatus();
+        gpsStatus.setTimeToFirstFix(28000);
+        satelliteFeed.setTimeToFirstFix(28000);
+        for (int i = 0; i < prns.length; i++) {
+            gpsStatus.add(new GpsSatellite(prns[i], 30 + i % 18, 10 + i * 3 % 80, i * 37 % 360, i % 4 != 0));
+        }
+    }
+
+    @Benchmark
+    public String getLocation() {
+        return location.getLocation(errors, types);
+    }
+
+    @Benchmark
+    public String nmeaJSON() {
+        return JSONHelper.nmeaJSON("NMEA", epoch, 1479547671000L, writer, GPSLocation.DEFAULT_PRECISION);
+    }
+
+    @Benchmark
+    public byte[] nmeaBinary() {
+        return encoder.encode(epoch, 1479547671000L);
+    }
+
+    @Benchmark
+    public String locationJSON() {
+        return JSONHelper.locationJSON("gps", androidLocation, false);
+    }
+
+    @Benchmark
+    public String locationJSONBuffered() {
+        return JSONHelper.locationJSON("gps", androidLocation, false, true, 53.36133791, -6.50561987, 3.8f, 10);
+    }
+
+    @Benchmark
+    public String satelliteDataJSON() {
+        return JSONHelper.satelliteDataJSON(gpsStatus);
+    }
+
+    /**
+     * The same satellites as satelliteDataJSON, copied in the way GPSController copies GnssStatus.
+     */
+    @Benchmark
+    public String satelliteFeed() {
+        satelliteFeed.begin();
+        for (int i = 0; i < prns.length; i++) {
+            satelliteFeed.add(prns[i] % 100, SatelliteFeed.fromAndroid(1 + i % 6), 30 + i % 18,
+                    10 + i * 3 % 80, i * 37 % 360, i % 4 != 0, Float.NaN);
+        }
+        return satelliteFeed.write(1479547671000L, 0);
+    }
+}
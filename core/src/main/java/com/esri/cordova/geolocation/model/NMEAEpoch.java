@@ -0,0 +1,186 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.model;
+
+import com.esri.cordova.geolocation.utils.Constellations;
+
+/**
+ * All values parsed from the NMEA sentences of one receiver epoch. Fields are primitives and
+ * the bits in <code>present</code> tell which of them were actually reported, so nothing is
+ * boxed and nothing is null. Arrays have a fixed capacity and are reused when the record is
+ * recycled through {@link com.esri.cordova.geolocation.utils.NMEAEpochPool}.
+ */
+public final class NMEAEpoch {
+
+    public static final int MAX_SENTENCES = 64;
+
+    // Presence bits
+    public static final int TIMESTAMP = 1;
+    public static final int POSITION = 1 << 1;
+    public static final int ACCURACY = 1 << 2;
+    public static final int SPEED = 1 << 3;
+    public static final int BEARING = 1 << 4;
+    public static final int ALTITUDE = 1 << 5;
+    public static final int GEOID_SEPARATION = 1 << 6;
+    public static final int ALTITUDE_ACCURACY = 1 << 7;
+    public static final int RTK_ACCURACY = 1 << 8;
+    public static final int RTK_ALTITUDE_ACCURACY = 1 << 9;
+    public static final int PDOP = 1 << 10;
+    public static final int HDOP = 1 << 11;
+    public static final int VDOP = 1 << 12;
+    public static final int BUFFERED = 1 << 13;
+    public static final int BUFFER_WEIGHTED = 1 << 14;
+    public static final int FILTERED = 1 << 15;
+    public static final int LOCATION = 1 << 16;
+
+    // Sources of the best fix, see FixArbitrator
+    public static final int SOURCE_NMEA = 0;
+    public static final int SOURCE_LOCATION = 1;
+
+    public int present;
+
+    public long timestamp;
+    public double latitude;
+    public double longitude;
+    public long latitudeNanoDegrees;
+    public long longitudeNanoDegrees;
+    public int quality;
+    public int fixtype;
+    public double accuracy;
+    public double speed;
+    public double bearing;
+    public double altitude;
+    public double altitudeDifferceEllipsoid;
+    public double altitudeAccuracy;
+    public double rtkAccuracy;
+    public double rtkAltitudeAccuracy;
+    public double pdop;
+    public double hdop;
+    public double vdop;
+
+    // Running centroid of the last bufferSize positions, see LocationBuffer
+    public double bufferedLatitude;
+    public double bufferedLongitude;
+    public double bufferedAccuracy; // NaN if no buffered position reported an accuracy
+    public int bufferSize;
+    public long bufferKept; // weighted averaging only, see StaticAverager
+    public long bufferRejected;
+    public boolean bufferOutlier; // this epoch was rejected
+
+    // Kalman filter output, see KalmanFilter
+    public double filteredLatitude;
+    public double filteredLongitude;
+    public double filteredVelocityEast; // metres per second
+    public double filteredVelocityNorth;
+    public final double[] filteredCovariance = new double[16]; // row-major, east, north, velocity east, velocity north
+
+    // Android Location paired with this epoch, see FixArbitrator. NaN if not reported
+    public long locationTime;
+    public double locationLatitude;
+    public double locationLongitude;
+    public double locationAccuracy;
+    public double locationAltitude;
+    public double locationSpeed;
+    public double locationBearing;
+    public int bestSource;
+
+    public int timeOfDay; // UTC milliseconds since midnight that keys the epoch, -1 until known
+
+    // Satellites used in the solution, bit n of word n / 64 for ID n, see Constellations
+    public final long[] usedSatellites = new long[Constellations.MAX_ID / 64];
+    public int satelliteCount;
+    public final int[] constellationCounts = new int[Constellations.COUNT];
+    public int constellations; // bit n set if constellationCounts[n] > 0
+
+    public final String[] sentences = new String[MAX_SENTENCES];
+    public int sentenceCount;
+
+    public NMEAEpoch() {
+        reset();
+    }
+
+    public boolean has(int field) {
+        return (present & field) != 0;
+    }
+
+    public void set(int field) {
+        present |= field;
+    }
+
+    /**
+     * Marks a satellite as used. A satellite reported twice, e.g. by GPGSA and GNGSA, is
+     * counted once; IDs outside the Constellations table are ignored.
+     */
+    public void addSatellite(int id) {
+        if (id < 0 || id >= Constellations.MAX_ID) {
+            return;
+        }
+        final long bit = 1L << id;
+        if ((usedSatellites[id >>> 6] & bit) != 0) {
+            return;
+        }
+        usedSatellites[id >>> 6] |= bit;
+        satelliteCount++;
+        final int constellation = Constellations.of(id);
+        if (constellation != Constellations.NONE) {
+            constellationCounts[constellation]++;
+            constellations |= 1 << constellation;
+        }
+    }
+
+    public boolean isSatelliteUsed(int id) {
+        return id >= 0 && id < Constellations.MAX_ID && (usedSatellites[id >>> 6] & (1L << id)) != 0;
+    }
+
+    /**
+     * Keeps a reference to the raw sentence. Sentences beyond MAX_SENTENCES are dropped.
+     */
+    public void addSentence(String sentence) {
+        if (sentenceCount < MAX_SENTENCES) {
+            sentences[sentenceCount++] = sentence;
+        }
+    }
+
+    public void reset() {
+        present = 0;
+        timestamp = 0;
+        latitude = 0;
+        longitude = 0;
+        latitudeNanoDegrees = 0;
+        longitudeNanoDegrees = 0;
+        quality = 0;
+        fixtype = 1;
+        bufferOutlier = false;
+        bestSource = SOURCE_NMEA;
+        timeOfDay = -1;
+        if (satelliteCount > 0) {
+            for (int i = 0; i < usedSatellites.length; i++) {
+                usedSatellites[i] = 0;
+            }
+            for (int i = 0; i < constellationCounts.length; i++) {
+                constellationCounts[i] = 0;
+            }
+            satelliteCount = 0;
+            constellations = 0;
+        }
+        // Drop sentence references so the Strings can be collected
+        for (int i = 0; i < sentenceCount; i++) {
+            sentences[i] = null;
+        }
+        sentenceCount = 0;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.model;
+
+/**
+ * Optional configuration for the NMEA pipeline. Defaults apply when an option is not set.
+ */
+public class NMEAOptions {
+
+    // Averaging modes for the buffer option
+    public static final int AVERAGING_MEAN = 0;
+    public static final int AVERAGING_WEIGHTED = 1;
+
+    public int precision = 9; // decimals for latitude and longitude
+    public boolean binary = false; // send epochs as little-endian records instead of JSON
+    public int batchSize = 1; // epochs per callback
+    public long batchIntervalMs = 0; // maximum time an epoch waits in a batch, 0 = no limit
+    public int credits = 0; // initial flow control credits, 0 = flow control off
+    public int mustDeliver = 1; // FlowControl event bits that are never conflated
+    public int ringBufferSize = 256; // NMEA messages queued between listener and parser thread
+    public int averaging = AVERAGING_MEAN;
+    public double outlierThreshold = 3.0; // robust standard deviations, 0 = keep every epoch
+    public boolean kalman = false; // add filtered position and velocity to epochs
+    public double kalmanAcceleration = 1.0; // m/s^2, process noise of the Kalman filter
+    public String[] replay = null; // NMEA log paths played instead of the live receiver
+    public double replaySpeed = 1; // 1 = real time, 0 = as fast as possible
+    public int reorderWindow = 2; // sentences a finished epoch waits for late sentences
+    public String[] epochSentences = null; // sentence types that complete an epoch, null = wait for the next epoch
+    public boolean learnEpochSentences = false; // learn epochSentences from the stream
+    public long epochTimeoutMs = 0; // emit an epoch missing some epochSentences after this long, 0 = off
+    public long statsIntervalMs = 0; // push pipeline stats this often, 0 = only on request
+    public boolean skyView = false; // send the satellites in view from GSV sentences, changes only
+    public long satelliteIntervalMs = 1000; // minimum time between satelliteData payloads, 0 = every update
+    public boolean arbitrate = false; // pair Android locations with NMEA epochs, one callback per fix
+    public long arbitrationWindowMs = 1500; // how long a fix waits for its partner from the other source
+
+    public NMEAOptions(){
+    }
+}
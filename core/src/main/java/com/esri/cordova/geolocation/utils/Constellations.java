@@ -0,0 +1,125 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+/**
+ * Maps the satellite IDs reported in GSA sentences to their constellation through a table
+ * built once, so parsing needs no comparisons and no Strings. IDs follow the NMEA 4.x and
+ * u-blox extended numbering. Receivers that report a satellite by its PRN within its own
+ * system, with an NMEA 4.10 system ID or a GA, GB, GL, GQ or GI talker, are moved into that
+ * system's range by {@link #index(int, int)}.
+ */
+public final class Constellations {
+
+    public static final int NONE = -1;
+    public static final int GPS = 0;
+    public static final int SBAS = 1;
+    public static final int GLONASS = 2;
+    public static final int IMES = 3;
+    public static final int QZSS = 4;
+    public static final int BEIDOU = 5;
+    public static final int GALILEO = 6;
+    public static final int IRNSS = 7;
+    public static final int COUNT = 8;
+
+    /** Constellation names as reported in <code>satSystem</code>, indexed by constant */
+    public static final String[] NAMES = {"GPS", "SBAS", "GLONASS", "IMES", "QZSS", "BeiDou", "GALILEO", "IRNSS"};
+
+    /** IDs from 0 to MAX_ID - 1 are tracked, a multiple of 64 so a bitset fills whole words */
+    public static final int MAX_ID = 512;
+
+    private static final byte[] TABLE = new byte[MAX_ID];
+
+    // Start of each constellation's extended range, PRN n is OFFSETS[constellation] + n
+    private static final int[] OFFSETS = {0, 0, 64, 172, 192, 400, 300, 480};
+    // Highest PRN within the constellation's own system
+    private static final int[] MAX_PRNS = {32, 64, 32, 10, 8, 63, 36, 20};
+
+    // NMEA 4.10 and 4.11 GSA system IDs 1 to 6
+    private static final int[] SYSTEM_IDS = {NONE, GPS, GLONASS, GALILEO, BEIDOU, QZSS, IRNSS};
+
+    static {
+        fill(0, MAX_ID, NONE);
+        fill(1, 33, GPS);
+        fill(33, 65, SBAS);
+        fill(65, 97, GLONASS);
+        fill(173, 183, IMES);
+        fill(193, 201, QZSS);
+        fill(201, 236, BEIDOU);
+        fill(301, 337, GALILEO);
+        fill(401, 464, BEIDOU);
+        fill(481, 501, IRNSS);
+    }
+
+    private Constellations() {
+    }
+
+    /**
+     * @return the constellation constant of a satellite ID, NONE if unknown or out of range
+     */
+    public static int of(int id) {
+        return id >= 0 && id < MAX_ID ? TABLE[id] : NONE;
+    }
+
+    /**
+     * @return the constellation of an NMEA 4.10 GSA or GSV system ID, NONE if unknown
+     */
+    public static int ofSystemId(int systemId) {
+        return systemId >= 0 && systemId < SYSTEM_IDS.length ? SYSTEM_IDS[systemId] : NONE;
+    }
+
+    /**
+     * @return the constellation of a talker ID that names a single system, NONE for GP, GN
+     * and others, whose satellites are told apart by ID
+     */
+    public static int ofTalker(char first, char second) {
+        if (first == 'G') {
+            switch (second) {
+                case 'L': return GLONASS;
+                case 'A': return GALILEO;
+                case 'B': return BEIDOU;
+                case 'Q': return QZSS;
+                case 'I': return IRNSS;
+                default: return NONE;
+            }
+        }
+        return first == 'B' && second == 'D' ? BEIDOU : NONE;
+    }
+
+    /**
+     * Maps a satellite ID reported for a known constellation to the extended numbering, e.g.
+     * Galileo PRN 5 to 305, so it does not collide with GPS PRN 5.
+     * @param constellation From the system ID or talker, NONE to keep the ID as is
+     * @return the ID within the table, which may be outside 0 to MAX_ID - 1 if unknown
+     */
+    public static int index(int constellation, int id) {
+        if (constellation == NONE || constellation == GPS || of(id) == constellation) {
+            // GPS system IDs also carry SBAS, whose IDs never overlap GPS
+            return id;
+        }
+        if (id >= 1 && id <= MAX_PRNS[constellation]) {
+            return OFFSETS[constellation] + id;
+        }
+        return id;
+    }
+
+    private static void fill(int from, int to, int constellation) {
+        for (int id = from; id < to; id++) {
+            TABLE[id] = (byte) constellation;
+        }
+    }
+}
@@ -0,0 +1,366 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import com.esri.cordova.geolocation.model.NMEAEpoch;
+
+/**
+ * Groups sentences into epochs keyed on the UTC time of day, parsed once per timed sentence
+ * into an integer. Talkers do not matter, GPGGA, GNRMC and GLGNS with the same time share an
+ * epoch. Sentences without a time, such as GSA and VTG, join the newest epoch.
+ *
+ * A newer time starts a new epoch. The previous one stays open for the next reorderWindow
+ * sentences, so a GST or ZDA that arrives late still reaches it, then it is emitted. Timed
+ * sentences older than the open epochs are dropped and counted as late. A jump back of more
+ * than MAX_LATE_MS, e.g. after a receiver reset or when a replay loops, starts over instead.
+ *
+ * With an expected sentence set, configured or learned from LEARN_EPOCHS identical epochs, an
+ * epoch is emitted as soon as its set is complete instead of when the next epoch starts.
+ * {@link #expire()} emits an incomplete epoch, e.g. from a timeout. A learned set is dropped and
+ * learned again after LEARN_EPOCHS epochs in a row miss it. Sentences that arrive after their
+ * epoch was emitted early are late, timeless ones join the next epoch.
+ * Not threadsafe, use from a single thread.
+ */
+public final class EpochAssembler {
+
+    public static final int DEFAULT_REORDER_WINDOW = 2; // sentences
+
+    static final int DAY_MS = 86400000;
+    private static final int MAX_LATE_MS = 2000;
+    private static final int LEARN_EPOCHS = 5;
+
+    private final GPSLocation _location;
+    private final NMEAPipeline.Sink _sink;
+    private final PipelineStats _stats; // null if not measured
+    private final int _reorderWindow;
+
+    private NMEAEpoch _previous = null; // waiting for late sentences, null if none
+    private int _remaining = 0; // sentences until _previous is emitted
+    private long _currentStarted = 0; // nanoTime of each epoch's first sentence, stats only
+    private long _previousStarted = 0;
+    private long _lastTimestamp = 0;
+
+    // Expected sentence set, counts indexed by NMEAParserRegistry.Entry.index
+    private final int[] _counts = new int[NMEAParserRegistry.MAX_ENTRIES]; // current epoch
+    private int[] _expected = null; // null = emit when the next epoch starts
+    private int _expectedTypes = 0;
+    private int _missing = 0; // types of the current epoch below their expected count
+    private boolean _learning = false;
+    private final int[] _candidate = new int[NMEAParserRegistry.MAX_ENTRIES];
+    private int _candidateRuns = 0;
+    private int _misses = 0;
+    private int _sequence = 0; // counts keyed epochs, see waiting()
+    private int _emittedKey = -1; // key of the last epoch emitted before the next one started
+    private long _emittedAt = 0; // nanoTime of that emission, stats only
+
+    /**
+     * @param reorderWindow Sentences after a new epoch starts that may still belong to the previous
+     *                      one, 0 emits the previous epoch as soon as the next one starts
+     */
+    public EpochAssembler(GPSLocation location, NMEAPipeline.Sink sink, PipelineStats stats, int reorderWindow) {
+        _location = location;
+        _sink = sink;
+        _stats = stats;
+        _reorderWindow = Math.max(0, reorderWindow);
+    }
+
+    /**
+     * Emits each epoch once it holds the given sentences.
+     * @param types Three letter sentence types, repeated for sentences sent more than once per
+     *              epoch, e.g. one GSA per constellation. Types without a parser are ignored.
+     */
+    public void expect(NMEAParserRegistry parsers, String[] types) {
+        final int[] expected = new int[NMEAParserRegistry.MAX_ENTRIES];
+        boolean any = false;
+        for (int i = 0; i < types.length; i++) {
+            final NMEAParserRegistry.Entry entry = parsers.get(types[i]);
+            if (entry != null) {
+                expected[entry.index]++;
+                any = true;
+            }
+        }
+        _learning = false;
+        setExpected(any ? expected : null);
+    }
+
+    /**
+     * Learns the expected sentence set from the stream.
+     */
+    public void learn() {
+        _learning = true;
+        _candidateRuns = 0;
+        setExpected(null);
+    }
+
+    /**
+     * @return A number identifying the current epoch while it waits for its expected set, 0 if
+     *         there is no set or the current epoch has no time yet
+     */
+    public int waiting() {
+        return _expected != null && _location.getEpoch().timeOfDay >= 0 ? _sequence : 0;
+    }
+
+    /**
+     * Keeps the sentence in the epoch it belongs to and runs its parser there.
+     * @param entry Parser of the sentence, null for sentences that are only kept as text
+     * @param timestamp Message timestamp, passed on with epochs this sentence completes
+     * @return false if the sentence was late and dropped
+     */
+    public boolean add(NMEASentence sentence, NMEAParserRegistry.Entry entry, String message, long timestamp) {
+        _lastTimestamp = timestamp;
+        final int key = entry != null && entry.timeField > 0 ? sentence.parseTimeOfDay(entry.timeField) : -1;
+        NMEAEpoch target = _location.getEpoch();
+        boolean started = false;
+        if (key >= 0 && key != target.timeOfDay) {
+            if (target.timeOfDay < 0) {
+                if (_emittedKey >= 0 && (key == _emittedKey || isLate(_emittedKey, key))) {
+                    return late(timestamp);
+                }
+                target.timeOfDay = key;
+                keyed();
+            }
+            else if (_previous != null && key == _previous.timeOfDay) {
+                target = _previous;
+            }
+            else if (isLate(target.timeOfDay, key)) {
+                return late(timestamp);
+            }
+            else {
+                advance(timestamp);
+                target = _location.getEpoch();
+                target.timeOfDay = key;
+                keyed();
+                started = true;
+            }
+        }
+        if (_stats != null && _currentStarted == 0) {
+            _currentStarted = System.nanoTime();
+        }
+
+        if (target == _location.getEpoch()) {
+            parse(sentence, entry, message);
+            if (entry != null && count(entry.index) && target.timeOfDay >= 0) {
+                close(true, timestamp);
+            }
+        }
+        else {
+            final NMEAEpoch current = _location.getEpoch();
+            _location.setEpoch(target);
+            try {
+                parse(sentence, entry, message);
+            }
+            finally {
+                _location.setEpoch(current);
+            }
+        }
+        if (!started) {
+            countDown(timestamp);
+        }
+        return true;
+    }
+
+    /**
+     * Emits the current epoch although its expected set is incomplete.
+     */
+    public void expire() {
+        if (_location.getEpoch().timeOfDay >= 0) {
+            close(false, _lastTimestamp);
+        }
+    }
+
+    /**
+     * Emits the open epochs, oldest first, e.g. when the stream stops.
+     */
+    public void flush() {
+        if (_previous != null) {
+            emit(_previous, _previousStarted, _lastTimestamp);
+            _previous = null;
+        }
+        if (_location.getEpoch().sentenceCount > 0) {
+            emit(_location.detachEpoch(), _currentStarted, _lastTimestamp);
+            _currentStarted = 0;
+        }
+        resetCounts();
+    }
+
+    private void parse(NMEASentence sentence, NMEAParserRegistry.Entry entry, String message) {
+        _location.addSentence(message);
+        if (entry != null) {
+            entry.parser.parse(sentence, _location);
+        }
+    }
+
+    /**
+     * Counts a sentence of the current epoch.
+     * @return true if it completes the expected set
+     */
+    private boolean count(int index) {
+        if (_expected == null && !_learning) {
+            return false;
+        }
+        final int count = ++_counts[index];
+        if (_expected != null && count == _expected[index]) {
+            return --_missing == 0;
+        }
+        return false;
+    }
+
+    /**
+     * Emits the current epoch before the next one starts.
+     * @param complete true if its expected set is complete, false on expiry
+     */
+    private void close(boolean complete, long timestamp) {
+        if (_previous != null) {
+            emit(_previous, _previousStarted, timestamp);
+            _previous = null;
+        }
+        learn(complete);
+        final NMEAEpoch epoch = _location.detachEpoch();
+        _emittedKey = epoch.timeOfDay;
+        if (_stats != null) {
+            if (complete) {
+                _stats.earlyEpoch();
+            }
+            else {
+                _stats.expiredEpoch();
+            }
+            _emittedAt = System.nanoTime();
+        }
+        emit(epoch, _currentStarted, timestamp);
+        _currentStarted = 0;
+        resetCounts();
+    }
+
+    /**
+     * Closes the current epoch because the next one starts, emitting the one that waited for
+     * late sentences.
+     */
+    private void advance(long timestamp) {
+        if (_previous != null) {
+            emit(_previous, _previousStarted, timestamp);
+            _previous = null;
+        }
+        learn(false);
+        if (_reorderWindow == 0) {
+            emit(_location.detachEpoch(), _currentStarted, timestamp);
+        }
+        else {
+            _previous = _location.detachEpoch();
+            _previousStarted = _currentStarted;
+            _remaining = _reorderWindow;
+        }
+        _currentStarted = 0;
+        resetCounts();
+    }
+
+    /**
+     * The current epoch got its time.
+     */
+    private void keyed() {
+        _sequence = _sequence == Integer.MAX_VALUE ? 1 : _sequence + 1;
+        _emittedKey = -1;
+        if (_stats != null && _emittedAt != 0) {
+            // How much earlier than the start of this epoch the previous one went out
+            _stats.saved.record(System.nanoTime() - _emittedAt);
+            _emittedAt = 0;
+        }
+    }
+
+    private boolean late(long timestamp) {
+        if (_stats != null) {
+            _stats.late();
+        }
+        countDown(timestamp);
+        return false;
+    }
+
+    private void countDown(long timestamp) {
+        if (_previous != null && --_remaining <= 0) {
+            emit(_previous, _previousStarted, timestamp);
+            _previous = null;
+        }
+    }
+
+    private void emit(NMEAEpoch epoch, long started, long timestamp) {
+        if (_stats != null && started != 0) {
+            _stats.assembly.record(System.nanoTime() - started);
+        }
+        _sink.epoch(epoch, timestamp);
+    }
+
+    /**
+     * Updates the learned set with the counts of the epoch being closed.
+     * @param complete true if the epoch held its expected set
+     */
+    private void learn(boolean complete) {
+        if (!_learning) {
+            return;
+        }
+        if (_expected != null) {
+            _misses = complete ? 0 : _misses + 1;
+            if (_misses < LEARN_EPOCHS) {
+                return;
+            }
+            _candidateRuns = 0;
+            setExpected(null);
+        }
+        boolean same = true;
+        boolean any = false;
+        for (int i = 0; i < _counts.length; i++) {
+            same &= _counts[i] == _candidate[i];
+            any |= _counts[i] > 0;
+        }
+        if (!same || _candidateRuns == 0) {
+            System.arraycopy(_counts, 0, _candidate, 0, _counts.length);
+            _candidateRuns = 0;
+        }
+        if (any && ++_candidateRuns >= LEARN_EPOCHS) {
+            setExpected(_candidate.clone());
+        }
+    }
+
+    private void setExpected(int[] expected) {
+        _expected = expected;
+        _expectedTypes = 0;
+        _misses = 0;
+        if (expected != null) {
+            for (int i = 0; i < expected.length; i++) {
+                if (expected[i] > 0) {
+                    _expectedTypes++;
+                }
+            }
+        }
+        _missing = _expectedTypes;
+    }
+
+    private void resetCounts() {
+        if (_expected != null || _learning) {
+            for (int i = 0; i < _counts.length; i++) {
+                _counts[i] = 0;
+            }
+        }
+        _missing = _expectedTypes;
+    }
+
+    /**
+     * @return true if key lies up to MAX_LATE_MS before current, across midnight
+     */
+    static boolean isLate(int current, int key) {
+        final int behind = ((current - key) % DAY_MS + DAY_MS) % DAY_MS;
+        return behind > 0 && behind <= MAX_LATE_MS;
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import com.esri.cordova.geolocation.model.NMEAEpoch;
+
+/**
+ * A stage applied to every completed epoch on the parser thread before it is delivered,
+ * e.g. averaging. Implementations write their results into the epoch and must not keep it.
+ */
+public interface EpochFilter {
+    void apply(NMEAEpoch epoch);
+}
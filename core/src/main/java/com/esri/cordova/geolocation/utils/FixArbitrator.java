@@ -0,0 +1,312 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import com.esri.cordova.geolocation.model.NMEAEpoch;
+
+/**
+ * Pairs Android Locations with the NMEA epoch of the same fix time, so each fix is sent once
+ * with both sources and the better one marked as best. A fix waits at most the window for its
+ * partner. An epoch only waits if a Location is due at its time, judged from the interval of the
+ * Locations so far, so epochs faster than the Locations are not delayed beyond the one in front
+ * of them. A Location without an epoch is sent as a record holding only the Location.
+ *
+ * Must be called on the engine's thread.
+ */
+public final class FixArbitrator {
+
+    public static final long MATCH_TOLERANCE_MS = 50; // Location and NMEA times of the same fix
+    public static final int MAX_HELD_EPOCHS = 16;
+    public static final int MAX_HELD_LOCATIONS = 4;
+
+    private static final long MAX_INTERVAL_MS = 10000;
+    private static final long NONE = Long.MIN_VALUE;
+
+    /**
+     * Receives every epoch and Location exactly once, paired where possible.
+     */
+    public interface Sink {
+        void fix(NMEAEpoch epoch, long timestamp);
+    }
+
+    private final long _windowMs;
+    private final NMEAEpochPool _pool;
+    private final Sink _sink;
+    private final NMEAEngine.Scheduler _scheduler;
+
+    // Epochs in arrival order, the first may wait for its Location and the others wait behind it
+    private final NMEAEpoch[] _epochs = new NMEAEpoch[MAX_HELD_EPOCHS];
+    private final long[] _epochTimestamps = new long[MAX_HELD_EPOCHS];
+    private int _epochHead = 0;
+    private int _epochCount = 0;
+    private long _headDeadline = NONE; // uptime until the first epoch waits, NONE if not waiting
+    private boolean _headExpired = false;
+
+    // Locations waiting for their epoch, oldest first
+    private final long[] _time = new long[MAX_HELD_LOCATIONS];
+    private final double[] _latitude = new double[MAX_HELD_LOCATIONS];
+    private final double[] _longitude = new double[MAX_HELD_LOCATIONS];
+    private final double[] _accuracy = new double[MAX_HELD_LOCATIONS];
+    private final double[] _altitude = new double[MAX_HELD_LOCATIONS];
+    private final double[] _speed = new double[MAX_HELD_LOCATIONS];
+    private final double[] _bearing = new double[MAX_HELD_LOCATIONS];
+    private final long[] _locationTimestamps = new long[MAX_HELD_LOCATIONS];
+    private final long[] _locationDeadlines = new long[MAX_HELD_LOCATIONS];
+    private int _locationCount = 0;
+
+    private long _lastLocationTime = NONE;
+    private long _lastLocationUptime;
+    private long _interval = 0;
+
+    // Written on the engine's thread only, read by stats from any thread
+    private volatile long _paired = 0;
+    private volatile long _epochsOnly = 0;
+    private volatile long _locationsOnly = 0;
+
+    /**
+     * @param windowMs Maximum time a fix waits for its partner
+     * @param pool Pool of the engine, Location only records are taken from it
+     */
+    public FixArbitrator(long windowMs, NMEAEpochPool pool, Sink sink, NMEAEngine.Scheduler scheduler) {
+        _windowMs = windowMs;
+        _pool = pool;
+        _sink = sink;
+        _scheduler = scheduler;
+    }
+
+    /**
+     * @param epoch Finished epoch, handed on to the sink
+     * @param timestamp Message timestamp of the epoch
+     */
+    public void epoch(NMEAEpoch epoch, long timestamp) {
+        if (_epochCount == MAX_HELD_EPOCHS) {
+            _headExpired = true;
+            drain();
+        }
+        final int tail = (_epochHead + _epochCount) % MAX_HELD_EPOCHS;
+        _epochs[tail] = epoch;
+        _epochTimestamps[tail] = timestamp;
+        _epochCount++;
+        if (_epochCount == 1) {
+            drain();
+        }
+    }
+
+    /**
+     * Accepts an Android Location. Values the Location does not have are NaN.
+     * @param time UTC time of the fix
+     * @param timestamp Time the Location was received
+     */
+    public void location(long time, double latitude, double longitude, double accuracy, double altitude,
+                         double speed, double bearing, long timestamp) {
+        final long now = _scheduler.uptimeMillis();
+        if (_lastLocationTime != NONE && time > _lastLocationTime && time - _lastLocationTime <= MAX_INTERVAL_MS) {
+            _interval = time - _lastLocationTime;
+        }
+        _lastLocationTime = time;
+        _lastLocationUptime = now;
+
+        if (_locationCount == MAX_HELD_LOCATIONS) {
+            sendLocation(0);
+        }
+        final int i = _locationCount++;
+        _time[i] = time;
+        _latitude[i] = latitude;
+        _longitude[i] = longitude;
+        _accuracy[i] = accuracy;
+        _altitude[i] = altitude;
+        _speed[i] = speed;
+        _bearing[i] = bearing;
+        _locationTimestamps[i] = timestamp;
+        _locationDeadlines[i] = now + _windowMs;
+        drain();
+    }
+
+    /**
+     * Sends everything still waiting for a partner, e.g. when updates stop.
+     */
+    public void flush() {
+        _scheduler.cancel(_timeoutTask);
+        _headExpired = true;
+        drain();
+        while (_locationCount > 0) {
+            sendLocation(0);
+        }
+    }
+
+    public long paired() {
+        return _paired;
+    }
+
+    public long epochsOnly() {
+        return _epochsOnly;
+    }
+
+    public long locationsOnly() {
+        return _locationsOnly;
+    }
+
+    /**
+     * Sends the held epochs in order until one has to wait for its Location, then sets the timer
+     * for the earliest deadline.
+     */
+    private void drain() {
+        while (_epochCount > 0 && send(_epochs[_epochHead], _epochTimestamps[_epochHead])) {
+            _epochs[_epochHead] = null;
+            _epochHead = (_epochHead + 1) % MAX_HELD_EPOCHS;
+            _epochCount--;
+            _headDeadline = NONE;
+            _headExpired = false;
+        }
+        schedule();
+    }
+
+    /**
+     * @return false if the epoch waits for its Location
+     */
+    private boolean send(NMEAEpoch epoch, long timestamp) {
+        if (epoch.has(NMEAEpoch.TIMESTAMP)) {
+            // Locations older than the epoch will not get one
+            while (_locationCount > 0 && _time[0] < epoch.timestamp - MATCH_TOLERANCE_MS) {
+                sendLocation(0);
+            }
+            for (int i = 0; i < _locationCount; i++) {
+                if (Math.abs(epoch.timestamp - _time[i]) <= MATCH_TOLERANCE_MS) {
+                    pair(epoch, i);
+                    remove(i);
+                    _sink.fix(epoch, timestamp);
+                    return true;
+                }
+            }
+        }
+        if (!_headExpired && isLocationDue(epoch)) {
+            if (_headDeadline == NONE) {
+                _headDeadline = _scheduler.uptimeMillis() + _windowMs;
+            }
+            return false;
+        }
+        _epochsOnly++;
+        _sink.fix(epoch, timestamp);
+        return true;
+    }
+
+    private void schedule() {
+        long deadline = NONE;
+        if (_epochCount > 0 && _headDeadline != NONE) {
+            deadline = _headDeadline;
+        }
+        if (_locationCount > 0 && (deadline == NONE || _locationDeadlines[0] < deadline)) {
+            deadline = _locationDeadlines[0];
+        }
+        _scheduler.cancel(_timeoutTask);
+        if (deadline != NONE) {
+            _scheduler.post(_timeoutTask, Math.max(0, deadline - _scheduler.uptimeMillis()));
+        }
+    }
+
+    /**
+     * Copies a held Location into the epoch and picks the source with the smaller horizontal
+     * error. Without an NMEA position the Location wins, without a Location accuracy NMEA does.
+     */
+    private void pair(NMEAEpoch epoch, int location) {
+        setLocation(epoch, location);
+        final double accuracy = _accuracy[location];
+        if (!epoch.has(NMEAEpoch.POSITION) || epoch.quality == 0) {
+            epoch.bestSource = NMEAEpoch.SOURCE_LOCATION;
+        }
+        else if (!Double.isNaN(accuracy) && accuracy < StaticAverager.sigma(epoch)) {
+            epoch.bestSource = NMEAEpoch.SOURCE_LOCATION;
+        }
+        else {
+            epoch.bestSource = NMEAEpoch.SOURCE_NMEA;
+        }
+        _paired++;
+    }
+
+    private void setLocation(NMEAEpoch epoch, int i) {
+        epoch.locationTime = _time[i];
+        epoch.locationLatitude = _latitude[i];
+        epoch.locationLongitude = _longitude[i];
+        epoch.locationAccuracy = _accuracy[i];
+        epoch.locationAltitude = _altitude[i];
+        epoch.locationSpeed = _speed[i];
+        epoch.locationBearing = _bearing[i];
+        epoch.set(NMEAEpoch.LOCATION);
+    }
+
+    private void sendLocation(int i) {
+        final NMEAEpoch record = _pool.acquire();
+        record.timestamp = _time[i];
+        record.set(NMEAEpoch.TIMESTAMP);
+        setLocation(record, i);
+        record.bestSource = NMEAEpoch.SOURCE_LOCATION;
+        final long timestamp = _locationTimestamps[i];
+        remove(i);
+        _locationsOnly++;
+        _sink.fix(record, timestamp);
+    }
+
+    private void remove(int i) {
+        _locationCount--;
+        for (int j = i; j < _locationCount; j++) {
+            _time[j] = _time[j + 1];
+            _latitude[j] = _latitude[j + 1];
+            _longitude[j] = _longitude[j + 1];
+            _accuracy[j] = _accuracy[j + 1];
+            _altitude[j] = _altitude[j + 1];
+            _speed[j] = _speed[j + 1];
+            _bearing[j] = _bearing[j + 1];
+            _locationTimestamps[j] = _locationTimestamps[j + 1];
+            _locationDeadlines[j] = _locationDeadlines[j + 1];
+        }
+    }
+
+    /**
+     * @return true if Locations are arriving and one is due at the epoch's time
+     */
+    private boolean isLocationDue(NMEAEpoch epoch) {
+        if (_interval == 0 || !epoch.has(NMEAEpoch.TIMESTAMP)) {
+            return false;
+        }
+        if (_scheduler.uptimeMillis() - _lastLocationUptime > 2 * _interval + _windowMs) {
+            return false; // Locations stopped
+        }
+        final long since = epoch.timestamp - _lastLocationTime;
+        if (since <= MATCH_TOLERANCE_MS) {
+            return false; // that Location already came
+        }
+        final long phase = since % _interval;
+        return phase <= MATCH_TOLERANCE_MS || _interval - phase <= MATCH_TOLERANCE_MS;
+    }
+
+    /**
+     * Gives up on partners whose deadline passed.
+     */
+    private final Runnable _timeoutTask = new Runnable() {
+        @Override
+        public void run() {
+            final long now = _scheduler.uptimeMillis();
+            if (_epochCount > 0 && _headDeadline != NONE && _headDeadline <= now) {
+                _headExpired = true;
+            }
+            while (_locationCount > 0 && _locationDeadlines[0] <= now) {
+                sendLocation(0);
+            }
+            drain();
+        }
+    };
+}
@@ -0,0 +1,157 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+/**
+ * Fixed-point number parsing for NMEA fields. Digits are read straight from the sentence
+ * characters into a long mantissa, so there are no intermediate Strings and no float rounding.
+ * Coordinates in ddmm.mmmmmmm / dddmm.mmmmmmm form are converted to degrees either as a double
+ * or as a long scaled by {@link #NANO_DEGREES}, which keeps RTK (millimetre) precision.
+ */
+public final class FixedPointParser {
+
+    public static final long NANO_DEGREES = 1000000000L;
+
+    private static final int MAX_DIGITS = 18;
+
+    static final long[] POW10 = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L,
+            1000000000L, 10000000000L, 100000000000L, 1000000000000L, 10000000000000L,
+            100000000000000L, 1000000000000000L, 10000000000000000L, 100000000000000000L,
+            1000000000000000000L
+    };
+
+    private FixedPointParser() {
+    }
+
+    /**
+     * Parses a decimal number, e.g. "-12.345", as a double.
+     * @throws NumberFormatException if the range is empty or malformed
+     */
+    public static double parseDouble(CharSequence text, int start, int end) {
+        final long packed = parseMantissa(text, start, end);
+        return (double) mantissaOf(packed) / POW10[scaleOf(packed)];
+    }
+
+    /**
+     * Parses a decimal number and returns it multiplied by 10^decimals. Extra fraction digits
+     * are rounded half up, e.g. "545.4" with decimals 3 returns 545400 (millimetres).
+     * @throws NumberFormatException if the range is empty or malformed
+     */
+    public static long parseScaled(CharSequence text, int start, int end, int decimals) {
+        final long packed = parseMantissa(text, start, end);
+        return rescale(mantissaOf(packed), scaleOf(packed), decimals);
+    }
+
+    /**
+     * Converts a NMEA coordinate to degrees.
+     * @param degreeDigits 2 for latitude (ddmm.mmmm), 3 for longitude (dddmm.mmmm)
+     * @throws NumberFormatException if the range is malformed
+     */
+    public static double parseCoordinate(CharSequence text, int start, int end, int degreeDigits) {
+        final int degrees = parseDegrees(text, start, degreeDigits);
+        final long packed = parseMantissa(text, start + degreeDigits, end);
+        return degrees + mantissaOf(packed) / (60.0 * POW10[scaleOf(packed)]);
+    }
+
+    /**
+     * Converts a NMEA coordinate to degrees scaled by {@link #NANO_DEGREES}, rounded half up.
+     * @param degreeDigits 2 for latitude (ddmm.mmmm), 3 for longitude (dddmm.mmmm)
+     * @throws NumberFormatException if the range is malformed
+     */
+    public static long parseCoordinateNanoDegrees(CharSequence text, int start, int end, int degreeDigits) {
+        final int degrees = parseDegrees(text, start, degreeDigits);
+        final long packed = parseMantissa(text, start + degreeDigits, end);
+        // minutes * 1e9 / 60 == (minutes * 1e8) / 6, computed at 1e-8 minute resolution
+        final long minutesE8 = rescale(mantissaOf(packed), scaleOf(packed), 8);
+        return degrees * NANO_DEGREES + (minutesE8 + 3) / 6;
+    }
+
+    private static int parseDegrees(CharSequence text, int start, int degreeDigits) {
+        int degrees = 0;
+        for (int i = start; i < start + degreeDigits; i++) {
+            final int d = i < text.length() ? text.charAt(i) - '0' : -1;
+            if (d < 0 || d > 9) {
+                throw new NumberFormatException("Invalid coordinate degrees");
+            }
+            degrees = degrees * 10 + d;
+        }
+        return degrees;
+    }
+
+    private static long rescale(long mantissa, int scale, int decimals) {
+        if (scale == decimals) {
+            return mantissa;
+        }
+        if (scale < decimals) {
+            return mantissa * POW10[decimals - scale];
+        }
+        final long divisor = POW10[scale - decimals];
+        final long half = mantissa < 0 ? -(divisor / 2) : divisor / 2;
+        return (mantissa + half) / divisor;
+    }
+
+    // The mantissa and its number of fraction digits are packed into one long to avoid
+    // returning an object: the low 5 bits hold the scale, the rest the signed mantissa.
+    private static long parseMantissa(CharSequence text, int start, int end) {
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+            negative = text.charAt(pos) == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; pos < end; pos++) {
+            final char c = text.charAt(pos);
+            if (c == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            final int d = c - '0';
+            if (d < 0 || d > 9) {
+                throw new NumberFormatException("Invalid digit in NMEA number");
+            }
+            if (digits < MAX_DIGITS - 1) {
+                mantissa = mantissa * 10 + d;
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            }
+            else if (scale < 0) {
+                throw new NumberFormatException("NMEA number too long");
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Empty NMEA number");
+        }
+        if (scale < 0) {
+            scale = 0;
+        }
+        return ((negative ? -mantissa : mantissa) << 5) | scale;
+    }
+
+    private static long mantissaOf(long packed) {
+        return packed >> 5;
+    }
+
+    private static int scaleOf(long packed) {
+        return (int) (packed & 0x1F);
+    }
+}
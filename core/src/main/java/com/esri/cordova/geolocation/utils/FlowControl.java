@@ -0,0 +1,191 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import com.esri.cordova.geolocation.model.NMEAEpoch;
+
+/**
+ * Credit based flow control between the native pipeline and JavaScript. Every callback that
+ * carries epochs costs one credit and JavaScript grants new credits with the "ack" action.
+ * While no credits are left, epochs are conflated: only the newest one is kept, except for
+ * must-deliver epochs, e.g. a change in fix quality, which are queued up to a fixed depth.
+ * Threadsafe.
+ */
+public final class FlowControl {
+
+    // Must-deliver events
+    public static final int QUALITY_CHANGE = 1;
+    public static final int FIXTYPE_CHANGE = 1 << 1;
+
+    public interface Sink {
+        void deliver(NMEAEpoch epoch, long timestamp);
+    }
+
+    private final int _mustDeliver;
+    private final NMEAEpoch[] _queue;
+    private final long[] _queueTimestamps;
+    private int _queueHead = 0;
+    private int _queueSize = 0;
+
+    private NMEAEpoch _latest = null;
+    private long _latestTimestamp = 0;
+
+    private int _credits;
+    private long _dropped = 0;
+    private int _lastQuality = -1;
+    private int _lastFixtype = -1;
+
+    /**
+     * @param credits Initial number of callbacks JavaScript accepts
+     * @param mustDeliver Bitmask of events that are never conflated, e.g. QUALITY_CHANGE
+     * @param queueCapacity Maximum number of must-deliver epochs held while out of credits
+     */
+    public FlowControl(int credits, int mustDeliver, int queueCapacity) {
+        _credits = credits;
+        _mustDeliver = mustDeliver;
+        _queue = new NMEAEpoch[queueCapacity];
+        _queueTimestamps = new long[queueCapacity];
+    }
+
+    /**
+     * Call for every epoch in arrival order.
+     * @return true if the epoch can be handed on for delivery now, false if it is now held
+     */
+    public synchronized boolean offer(NMEAEpoch epoch, long timestamp, NMEAEpochPool pool) {
+        final boolean must = isMustDeliver(epoch);
+        if (_credits > 0 && pendingCount() == 0) {
+            return true;
+        }
+        if (must) {
+            if (_queueSize == _queue.length) {
+                // Queue full, the oldest must-deliver epoch is dropped
+                pool.release(_queue[_queueHead]);
+                _queue[_queueHead] = null;
+                _queueHead = (_queueHead + 1) % _queue.length;
+                _queueSize--;
+                _dropped++;
+            }
+            final int tail = (_queueHead + _queueSize) % _queue.length;
+            _queue[tail] = epoch;
+            _queueTimestamps[tail] = timestamp;
+            _queueSize++;
+        }
+        else {
+            if (_latest != null) {
+                pool.release(_latest);
+                _dropped++;
+            }
+            _latest = epoch;
+            _latestTimestamp = timestamp;
+        }
+        return false;
+    }
+
+    /**
+     * Hands held epochs to the sink in arrival order while credits last.
+     * The sink is called without holding the lock.
+     */
+    public void drain(Sink sink) {
+        while (true) {
+            final NMEAEpoch epoch;
+            final long timestamp;
+            synchronized (this) {
+                if (_credits <= 0) {
+                    return;
+                }
+                // Keep arrival order between the queue and the newest conflated epoch
+                final boolean latestFirst = _latest != null
+                        && (_queueSize == 0 || _latestTimestamp < _queueTimestamps[_queueHead]);
+                if (_queueSize > 0 && !latestFirst) {
+                    epoch = _queue[_queueHead];
+                    timestamp = _queueTimestamps[_queueHead];
+                    _queue[_queueHead] = null;
+                    _queueHead = (_queueHead + 1) % _queue.length;
+                    _queueSize--;
+                }
+                else if (_latest != null) {
+                    epoch = _latest;
+                    timestamp = _latestTimestamp;
+                    _latest = null;
+                }
+                else {
+                    return;
+                }
+            }
+            sink.deliver(epoch, timestamp);
+        }
+    }
+
+    /**
+     * Call once for every callback carrying epochs.
+     */
+    public synchronized void consume() {
+        _credits--;
+    }
+
+    /**
+     * Adds credits granted by JavaScript.
+     */
+    public synchronized void grant(int credits) {
+        _credits += credits;
+    }
+
+    /**
+     * Returns all held epochs to the pool.
+     */
+    public synchronized void clear(NMEAEpochPool pool) {
+        while (_queueSize > 0) {
+            pool.release(_queue[_queueHead]);
+            _queue[_queueHead] = null;
+            _queueHead = (_queueHead + 1) % _queue.length;
+            _queueSize--;
+        }
+        pool.release(_latest);
+        _latest = null;
+    }
+
+    public synchronized int credits() {
+        return _credits;
+    }
+
+    /**
+     * @return number of epochs waiting for credits
+     */
+    public synchronized int pendingCount() {
+        return _queueSize + (_latest == null ? 0 : 1);
+    }
+
+    /**
+     * @return number of epochs discarded by conflation or queue overflow
+     */
+    public synchronized long dropped() {
+        return _dropped;
+    }
+
+    private boolean isMustDeliver(NMEAEpoch epoch) {
+        boolean must = false;
+        if ((_mustDeliver & QUALITY_CHANGE) != 0 && epoch.quality != _lastQuality) {
+            must = _lastQuality != -1;
+        }
+        if ((_mustDeliver & FIXTYPE_CHANGE) != 0 && epoch.fixtype != _lastFixtype) {
+            must = must || _lastFixtype != -1;
+        }
+        _lastQuality = epoch.quality;
+        _lastFixtype = epoch.fixtype;
+        return must;
+    }
+}
@@ -0,0 +1,587 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import com.esri.cordova.geolocation.model.NMEAEpoch;
+
+import java.util.ArrayList;
+
+/**
+ * Parses NMEA sentences into the current {@link NMEAEpoch} record.
+ * Not threadsafe, use one instance per NMEA stream.
+ */
+public class GPSLocation {
+
+	public static final int DEFAULT_PRECISION = 9;
+	public static final int METRIC_PRECISION = 3; // millimetres
+	public static final int COVARIANCE_PRECISION = 6; // m^2, keeps centimetre level variances readable
+
+	private static final int POOL_SIZE = 4;
+	private static final double KNOTS_TO_MS = 0.514444;
+
+	private final NMEAEpochPool pool;
+	private final UTCClock clock = new UTCClock();
+	private NMEAEpoch epoch;
+	private SkyView skyView; // null unless GSV sentences are parsed
+	private String errorMessage;
+	private boolean error = false;
+
+	public GPSLocation() {
+		this(new NMEAEpochPool(POOL_SIZE));
+	}
+
+	public GPSLocation(NMEAEpochPool pool) {
+		this.pool = pool;
+		this.epoch = pool.acquire();
+	}
+
+	/**
+	 * Resets the current epoch in place.
+	 */
+	public void clear() {
+		this.epoch.reset();
+		this.errorMessage = null;
+		this.error = false;
+	}
+
+	public NMEAEpoch getEpoch() {
+		return this.epoch;
+	}
+
+	/**
+	 * Hands the current epoch to the caller and continues parsing into a record taken from
+	 * the pool. Give the detached record back with {@link #recycle(NMEAEpoch)} when done.
+	 */
+	public NMEAEpoch detachEpoch() {
+		final NMEAEpoch detached = this.epoch;
+		this.epoch = pool.acquire();
+		this.errorMessage = null;
+		this.error = false;
+		return detached;
+	}
+
+	public NMEAEpochPool getPool() {
+		return this.pool;
+	}
+
+	public void recycle(NMEAEpoch detached) {
+		pool.release(detached);
+	}
+
+	public boolean parseError() {
+		return this.error;
+	}
+
+	public String getError() {
+		String e = this.errorMessage;
+		this.errorMessage = null;
+		this.error = false;
+		return e;
+	}
+
+	/**
+	 * Parses into the given record from now on, see {@link EpochAssembler}.
+	 */
+	public void setEpoch(NMEAEpoch epoch) {
+		this.epoch = epoch;
+	}
+
+	/**
+	 * Parses GSV sentences into the given sky view, null ignores them.
+	 */
+	public void setSkyView(SkyView skyView) {
+		this.skyView = skyView;
+	}
+
+	public SkyView getSkyView() {
+		return this.skyView;
+	}
+
+	/**
+	 * The time of day of the epoch, as keyed by {@link EpochAssembler}, so the field is parsed
+	 * only once. Epochs parsed without the assembler fall back to the field.
+	 * @return Milliseconds since midnight UTC, -1 if unknown
+	 */
+	private int timeOfDay(NMEASentence mp, int field) {
+		return this.epoch.timeOfDay >= 0 ? this.epoch.timeOfDay : mp.parseTimeOfDay(field);
+	}
+
+	public void addSentence(String message) {
+		this.epoch.addSentence(message);
+	}
+
+	public String getLocation(ArrayList<String> parsingErrors, ArrayList<String> parsedTypes) {
+		return getLocation(this.epoch);
+	}
+
+	public static String getLocation(NMEAEpoch e) {
+		return writeLocation(e, new JSONWriter(), DEFAULT_PRECISION).toString();
+	}
+
+	/**
+	 * Streams an epoch as a JSON object. Fields that were not reported are omitted.
+	 * @param e The epoch
+	 * @param json Writer positioned where a value is expected
+	 * @param precision Maximum decimals for latitude and longitude, other values use at most 3
+	 * @return the writer
+	 */
+	public static JSONWriter writeLocation(NMEAEpoch e, JSONWriter json, int precision) {
+		final int decimals = Math.min(precision, METRIC_PRECISION);
+		json.beginObject();
+		if (e.quality == 0) {
+			json.name("service", "NO-FIX");
+		}
+		if (e.quality == 2) {
+			json.name("service", "GPS");
+		}
+		if (e.quality == 3) {
+			json.name("service", "RTD");
+		}
+		if (e.quality == 4) {
+			json.name("service", "RTK fix");
+		}
+		if (e.quality == 5) {
+			json.name("service", "RTK float");
+		}
+		json.name("timestamp", e.timestamp);
+		if (e.has(NMEAEpoch.POSITION)) {
+			json.name("latitude", e.latitude, precision);
+			json.name("longitude", e.longitude, precision);
+		}
+		json.name("quality", e.quality);
+		writeValue(json, e, NMEAEpoch.ACCURACY, "accuracy", e.accuracy, decimals);
+		writeValue(json, e, NMEAEpoch.SPEED, "speed", e.speed, decimals);
+		writeValue(json, e, NMEAEpoch.BEARING, "bearing", e.bearing, decimals);
+		writeValue(json, e, NMEAEpoch.ALTITUDE, "altitude", e.altitude, decimals);
+		writeValue(json, e, NMEAEpoch.ALTITUDE_ACCURACY, "altitude_accuracy", e.altitudeAccuracy, decimals);
+		writeValue(json, e, NMEAEpoch.RTK_ACCURACY, "rtk_accuracy", e.rtkAccuracy, decimals);
+		writeValue(json, e, NMEAEpoch.RTK_ALTITUDE_ACCURACY, "rtk_altitude_accuracy", e.rtkAltitudeAccuracy, decimals);
+		writeValue(json, e, NMEAEpoch.VDOP, "vdop", e.vdop, decimals);
+		writeValue(json, e, NMEAEpoch.HDOP, "hdop", e.hdop, decimals);
+		writeValue(json, e, NMEAEpoch.PDOP, "pdop", e.pdop, decimals);
+		json.name("fixtype", e.fixtype);
+
+		json.name("fixedSat").beginArray();
+		for (int w = 0; w < e.usedSatellites.length; w++) {
+			long bits = e.usedSatellites[w];
+			while (bits != 0) {
+				json.value((w << 6) + Long.numberOfTrailingZeros(bits));
+				bits &= bits - 1;
+			}
+		}
+		json.endArray();
+
+		json.name("satSystem").beginArray();
+		for (int c = 0; c < Constellations.COUNT; c++) {
+			if ((e.constellations & (1 << c)) != 0) {
+				json.value(Constellations.NAMES[c]);
+			}
+		}
+		json.endArray();
+
+		json.name("satCounts").beginObject();
+		for (int c = 0; c < Constellations.COUNT; c++) {
+			if ((e.constellations & (1 << c)) != 0) {
+				json.name(Constellations.NAMES[c], e.constellationCounts[c]);
+			}
+		}
+		json.endObject();
+
+		json.name("NMEASentences").beginArray();
+		for (int i = 0; i < e.sentenceCount; i++) {
+			json.value(e.sentences[i]);
+		}
+		json.endArray();
+		writeValue(json, e, NMEAEpoch.GEOID_SEPARATION, "altitudeDifferceEllipsoid", e.altitudeDifferceEllipsoid, decimals);
+		if (e.has(NMEAEpoch.BUFFERED)) {
+			json.name("buffer", true);
+			json.name("bufferSize", e.bufferSize);
+			json.name("bufferedLatitude", e.bufferedLatitude, precision);
+			json.name("bufferedLongitude", e.bufferedLongitude, precision);
+			if (!Double.isNaN(e.bufferedAccuracy)) {
+				json.name("bufferedAccuracy", e.bufferedAccuracy, decimals);
+			}
+			if (e.has(NMEAEpoch.BUFFER_WEIGHTED)) {
+				json.name("bufferKept", e.bufferKept);
+				json.name("bufferRejected", e.bufferRejected);
+				json.name("bufferOutlier", e.bufferOutlier);
+			}
+		}
+		if (e.has(NMEAEpoch.FILTERED)) {
+			json.name("filteredLatitude", e.filteredLatitude, precision);
+			json.name("filteredLongitude", e.filteredLongitude, precision);
+			json.name("filteredVelocityEast", e.filteredVelocityEast, decimals);
+			json.name("filteredVelocityNorth", e.filteredVelocityNorth, decimals);
+			json.name("filteredCovariance").beginArray();
+			for (int i = 0; i < e.filteredCovariance.length; i++) {
+				json.value(e.filteredCovariance[i], COVARIANCE_PRECISION);
+			}
+			json.endArray();
+		}
+		if (e.has(NMEAEpoch.LOCATION)) {
+			json.name("location").beginObject();
+			json.name("timestamp", e.locationTime);
+			json.name("latitude", e.locationLatitude, precision);
+			json.name("longitude", e.locationLongitude, precision);
+			writeValue(json, "accuracy", e.locationAccuracy, decimals);
+			writeValue(json, "altitude", e.locationAltitude, decimals);
+			writeValue(json, "speed", e.locationSpeed, decimals);
+			writeValue(json, "bearing", e.locationBearing, decimals);
+			json.endObject();
+			json.name("best", e.bestSource == NMEAEpoch.SOURCE_LOCATION ? "location" : "nmea");
+		}
+		json.endObject();
+		return json;
+	}
+
+	/**
+	 * Streams the complete NMEA callback payload, the epoch nested under "message".
+	 * @param json Writer, reset before use
+	 * @return the writer
+	 */
+	public static JSONWriter writeMessage(String provider, NMEAEpoch e, long timestamp, JSONWriter json, int precision) {
+		json.reset().beginObject();
+		json.name("provider", provider);
+		json.name("timestamp", timestamp);
+		json.name("message");
+		writeLocation(e, json, precision);
+		json.endObject();
+		return json;
+	}
+
+	private static void writeValue(JSONWriter json, NMEAEpoch e, int field, String name, double value, int decimals) {
+		if (e.has(field)) {
+			json.name(name, value, decimals);
+		}
+	}
+
+	private static void writeValue(JSONWriter json, String name, double value, int decimals) {
+		if (!Double.isNaN(value)) {
+			json.name(name, value, decimals);
+		}
+	}
+
+
+	public void parseGGA(NMEASentence mp) {
+		final NMEAEpoch e = this.epoch;
+		try {
+			/* Parsing time if not already set */
+			if (!e.has(NMEAEpoch.TIMESTAMP)) {
+				final int timeOfDay = timeOfDay(mp, 1);
+				if (timeOfDay >= 0) {
+					e.timestamp = clock.toMillis(timeOfDay);
+					e.set(NMEAEpoch.TIMESTAMP);
+				}
+			}
+			if (!mp.isEmpty(6)) {
+				e.quality = mp.parseInt(6);
+			}
+			if (e.quality > 0) {
+				parsePosition(mp, 2);
+				if (!mp.isEmpty(8)) {
+					e.hdop = mp.parseDecimal(8);
+					e.accuracy = e.hdop;
+					e.set(NMEAEpoch.HDOP | NMEAEpoch.ACCURACY);
+				}
+				if (!mp.isEmpty(9)) {
+					e.altitude = mp.parseDecimal(9);
+					e.set(NMEAEpoch.ALTITUDE);
+				}
+				if (!mp.isEmpty(11)) {
+					e.altitudeDifferceEllipsoid = mp.parseDecimal(11);
+					e.set(NMEAEpoch.GEOID_SEPARATION);
+				}
+			}
+		} catch (Exception exc) {
+			this.error = true;
+			this.errorMessage = exc.getMessage();
+		}
+	}
+
+	public void parseGSA(NMEASentence mp) {
+		final NMEAEpoch e = this.epoch;
+		try {
+			if (!mp.isEmpty(2)) {
+				e.fixtype = mp.parseInt(2);
+			}
+			/* Fields 3 to 14 hold the PRNs used in the solution. NMEA 4.10 names their system in
+			 * field 18, older receivers only through the talker, e.g. GAGSA for Galileo */
+			int constellation = Constellations.NONE;
+			if (!mp.isEmpty(18)) {
+				constellation = Constellations.ofSystemId(mp.parseInt(18));
+			}
+			else if (mp.isTalkerSentence()) {
+				constellation = Constellations.ofTalker(mp.charAt(0, 0), mp.charAt(0, 1));
+			}
+			for (int i = 3; i < 15; i++) {
+				if (!mp.isEmpty(i)) {
+					e.addSatellite(Constellations.index(constellation, mp.parseInt(i)));
+				}
+			}
+
+			if (!mp.isEmpty(15)) {
+				e.pdop = mp.parseDecimal(15);
+				e.set(NMEAEpoch.PDOP);
+			}
+			if (!mp.isEmpty(16)) {
+				e.hdop = mp.parseDecimal(16);
+				e.set(NMEAEpoch.HDOP);
+			}
+			if (!mp.isEmpty(17)) {
+				e.vdop = mp.parseDecimal(17);
+				e.altitudeAccuracy = e.vdop;
+				e.set(NMEAEpoch.VDOP | NMEAEpoch.ALTITUDE_ACCURACY);
+			}
+		} catch (Exception exc) {
+			this.error = true;
+			this.errorMessage = exc.getMessage();
+		}
+	}
+
+	public void parseZDA(NMEASentence mp) {
+		final NMEAEpoch e = this.epoch;
+		try {
+			final int timeOfDay = timeOfDay(mp, 1);
+			if (timeOfDay >= 0 && !mp.isEmpty(2) && !mp.isEmpty(3) && !mp.isEmpty(4)) {
+				final int day = mp.parseInt(2);
+				final int month = mp.parseInt(3);
+				final int year = mp.parseInt(4);
+				if (month >= 1 && month <= 12 && day >= 1 && day <= 31) {
+					e.timestamp = clock.toMillis(year, month, day, timeOfDay);
+					e.set(NMEAEpoch.TIMESTAMP);
+				}
+			}
+		} catch (Exception exc) {
+			this.error = true;
+			this.errorMessage = exc.getMessage();
+		}
+	}
+
+    public void parseVTG(NMEASentence mp) {
+    	final NMEAEpoch e = this.epoch;
+    	try {
+	    	if (!mp.isEmpty(1)) {
+	    		e.bearing = mp.parseDecimal(1);
+	    		e.set(NMEAEpoch.BEARING);
+	    	}
+	    	if (!mp.isEmpty(7)) {
+	    		e.speed = mp.parseDecimal(7) / 3.6;
+	    		e.set(NMEAEpoch.SPEED);
+	    	}
+		} catch (Exception exc) {
+			this.error = true;
+			this.errorMessage = exc.getMessage();
+		}
+	}
+
+    public void parseGST(NMEASentence mp) {
+    	final NMEAEpoch e = this.epoch;
+    	try {
+	    	if (!mp.isEmpty(6)) {
+	    		e.rtkAccuracy = mp.parseDecimal(6);
+	    		e.set(NMEAEpoch.RTK_ACCURACY);
+	    	}
+	    	if (!mp.isEmpty(8)) {
+	    		e.rtkAltitudeAccuracy = mp.parseDecimal(8);
+	    		e.set(NMEAEpoch.RTK_ALTITUDE_ACCURACY);
+	    	}
+		} catch (Exception exc) {
+			this.error = true;
+			this.errorMessage = exc.getMessage();
+		}
+    }
+
+    public void parseRMC(NMEASentence mp) {
+    	final NMEAEpoch e = this.epoch;
+    	try {
+    		/* Field 2 is the status, A = valid, V = warning */
+    		if (!mp.fieldEquals(2, 'A')) {
+    			return;
+    		}
+    		/* Field 9 is the date, ddmmyy */
+    		final int timeOfDay = timeOfDay(mp, 1);
+    		if (timeOfDay >= 0 && mp.length(9) == 6) {
+    			final int day = mp.parseInt(9, 0, 2);
+    			final int month = mp.parseInt(9, 2, 4);
+    			final int year = mp.parseInt(9, 4, 6);
+    			/* A dated time replaces one taken from the cached day */
+    			if (month >= 1 && month <= 12 && day >= 1 && day <= 31) {
+    				e.timestamp = clock.toMillis(year < 80 ? 2000 + year : 1900 + year, month, day, timeOfDay);
+    				e.set(NMEAEpoch.TIMESTAMP);
+    			}
+    		}
+    		if (!e.has(NMEAEpoch.POSITION)) {
+    			parsePosition(mp, 3);
+    		}
+    		if (!e.has(NMEAEpoch.SPEED) && !mp.isEmpty(7)) {
+    			e.speed = mp.parseDecimal(7) * KNOTS_TO_MS;
+    			e.set(NMEAEpoch.SPEED);
+    		}
+    		if (!e.has(NMEAEpoch.BEARING) && !mp.isEmpty(8)) {
+    			e.bearing = mp.parseDecimal(8);
+    			e.set(NMEAEpoch.BEARING);
+    		}
+		} catch (Exception exc) {
+			this.error = true;
+			this.errorMessage = exc.getMessage();
+		}
+    }
+
+    public void parseGNS(NMEASentence mp) {
+    	final NMEAEpoch e = this.epoch;
+    	try {
+    		/* Field 6 holds one mode indicator per constellation, the first one is used */
+    		if (e.quality == 0 && !mp.isEmpty(6)) {
+    			switch (mp.charAt(6, 0)) {
+    				case 'A': e.quality = 1; break;
+    				case 'D': e.quality = 2; break;
+    				case 'P': e.quality = 3; break;
+    				case 'R': e.quality = 4; break;
+    				case 'F': e.quality = 5; break;
+    				case 'E': e.quality = 6; break;
+    				default: break;
+    			}
+    		}
+    		if (e.quality == 0) {
+    			return;
+    		}
+    		if (!e.has(NMEAEpoch.TIMESTAMP)) {
+    			final int timeOfDay = timeOfDay(mp, 1);
+    			if (timeOfDay >= 0) {
+    				e.timestamp = clock.toMillis(timeOfDay);
+    				e.set(NMEAEpoch.TIMESTAMP);
+    			}
+    		}
+    		if (!e.has(NMEAEpoch.POSITION)) {
+    			parsePosition(mp, 2);
+    		}
+    		if (!e.has(NMEAEpoch.HDOP) && !mp.isEmpty(8)) {
+    			e.hdop = mp.parseDecimal(8);
+    			e.accuracy = e.hdop;
+    			e.set(NMEAEpoch.HDOP | NMEAEpoch.ACCURACY);
+    		}
+    		if (!e.has(NMEAEpoch.ALTITUDE) && !mp.isEmpty(9)) {
+    			e.altitude = mp.parseDecimal(9);
+    			e.set(NMEAEpoch.ALTITUDE);
+    		}
+    		if (!e.has(NMEAEpoch.GEOID_SEPARATION) && !mp.isEmpty(10)) {
+    			e.altitudeDifferceEllipsoid = mp.parseDecimal(10);
+    			e.set(NMEAEpoch.GEOID_SEPARATION);
+    		}
+		} catch (Exception exc) {
+			this.error = true;
+			this.errorMessage = exc.getMessage();
+		}
+    }
+
+    /**
+     * Satellites in view go to the sky view, not to the epoch.
+     */
+    public void parseGSV(NMEASentence mp) {
+    	if (this.skyView == null) {
+    		return;
+    	}
+    	try {
+    		this.skyView.add(mp);
+		} catch (Exception exc) {
+			this.error = true;
+			this.errorMessage = exc.getMessage();
+		}
+    }
+
+    public void parseGLL(NMEASentence mp) {
+    	try {
+    		/* Field 6 is the status, A = valid */
+    		if (!this.epoch.has(NMEAEpoch.POSITION) && mp.fieldEquals(6, 'A')) {
+    			parsePosition(mp, 1);
+    		}
+		} catch (Exception exc) {
+			this.error = true;
+			this.errorMessage = exc.getMessage();
+		}
+    }
+
+    public void parseGBS(NMEASentence mp) {
+    	final NMEAEpoch e = this.epoch;
+    	try {
+    		/* Expected errors in metres, GST sigmas take precedence */
+    		if (!e.has(NMEAEpoch.RTK_ACCURACY) && !mp.isEmpty(2)) {
+    			e.rtkAccuracy = mp.parseDecimal(2);
+    			e.set(NMEAEpoch.RTK_ACCURACY);
+    		}
+    		if (!e.has(NMEAEpoch.RTK_ALTITUDE_ACCURACY) && !mp.isEmpty(4)) {
+    			e.rtkAltitudeAccuracy = mp.parseDecimal(4);
+    			e.set(NMEAEpoch.RTK_ALTITUDE_ACCURACY);
+    		}
+		} catch (Exception exc) {
+			this.error = true;
+			this.errorMessage = exc.getMessage();
+		}
+    }
+
+    /**
+     * u-blox PUBX,00 position message. Horizontal and vertical accuracy estimates are in metres.
+     */
+    public void parsePUBX(NMEASentence mp) {
+    	final NMEAEpoch e = this.epoch;
+    	try {
+    		if (mp.length(1) != 2 || mp.charAt(1, 0) != '0' || mp.charAt(1, 1) != '0') {
+    			return;
+    		}
+    		/* Field 8 is the navigation status, NF = no fix */
+    		final boolean noFix = mp.length(8) == 2 && mp.charAt(8, 0) == 'N' && mp.charAt(8, 1) == 'F';
+    		if (!e.has(NMEAEpoch.POSITION) && !noFix) {
+    			parsePosition(mp, 3);
+    		}
+    		if (!mp.isEmpty(9)) {
+    			e.accuracy = mp.parseDecimal(9);
+    			e.set(NMEAEpoch.ACCURACY);
+    			/* Metres like the GST sigmas, which take precedence */
+    			if (!e.has(NMEAEpoch.RTK_ACCURACY)) {
+    				e.rtkAccuracy = e.accuracy;
+    				e.set(NMEAEpoch.RTK_ACCURACY);
+    			}
+    		}
+    		if (!mp.isEmpty(10)) {
+    			e.altitudeAccuracy = mp.parseDecimal(10);
+    			e.set(NMEAEpoch.ALTITUDE_ACCURACY);
+    		}
+		} catch (Exception exc) {
+			this.error = true;
+			this.errorMessage = exc.getMessage();
+		}
+    }
+
+	/**
+	 * Reads latitude (ddmm.mmmm) and longitude (dddmm.mmmm) from four consecutive fields,
+	 * each followed by its hemisphere. North and east are positive.
+	 * @param latField Index of the latitude field
+	 */
+	private void parsePosition(NMEASentence mp, int latField) {
+		if (mp.isEmpty(latField) || mp.isEmpty(latField + 2)) {
+			return;
+		}
+		final NMEAEpoch e = this.epoch;
+		final long lat = mp.parseCoordinateNanoDegrees(latField, 2);
+		final long lon = mp.parseCoordinateNanoDegrees(latField + 2, 3);
+		e.latitudeNanoDegrees = mp.fieldEquals(latField + 1, 'S') ? -lat : lat;
+		e.longitudeNanoDegrees = mp.fieldEquals(latField + 3, 'W') ? -lon : lon;
+		e.latitude = (double) e.latitudeNanoDegrees / FixedPointParser.NANO_DEGREES;
+		e.longitude = (double) e.longitudeNanoDegrees / FixedPointParser.NANO_DEGREES;
+		e.set(NMEAEpoch.POSITION);
+	}
+}
@@ -0,0 +1,239 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+/**
+ * Minimal streaming JSON writer over a reusable StringBuilder. Nested objects and arrays are
+ * written directly, so payloads are encoded exactly once. Doubles are written in fixed-point
+ * notation with a capped number of decimals and without going through Double.toString().
+ * Not threadsafe, use one instance per thread.
+ */
+public final class JSONWriter {
+
+    private static final int MAX_DEPTH = 16;
+    private static final int MAX_DECIMALS = 12;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder _buf;
+    private final boolean[] _first = new boolean[MAX_DEPTH];
+    private int _depth = 0;
+    private boolean _afterName = false;
+
+    public JSONWriter() {
+        this(1024);
+    }
+
+    public JSONWriter(int capacity) {
+        _buf = new StringBuilder(capacity);
+        reset();
+    }
+
+    /**
+     * Clears the buffer but keeps its capacity.
+     */
+    public JSONWriter reset() {
+        _buf.setLength(0);
+        _depth = 0;
+        _first[0] = true;
+        _afterName = false;
+        return this;
+    }
+
+    public JSONWriter beginObject() {
+        separator();
+        _buf.append('{');
+        push();
+        return this;
+    }
+
+    public JSONWriter endObject() {
+        _depth--;
+        _buf.append('}');
+        return this;
+    }
+
+    public JSONWriter beginArray() {
+        separator();
+        _buf.append('[');
+        push();
+        return this;
+    }
+
+    public JSONWriter endArray() {
+        _depth--;
+        _buf.append(']');
+        return this;
+    }
+
+    public JSONWriter name(String name) {
+        separator();
+        string(name);
+        _buf.append(':');
+        _afterName = true;
+        return this;
+    }
+
+    public JSONWriter value(String value) {
+        separator();
+        if (value == null) {
+            _buf.append("null");
+        }
+        else {
+            string(value);
+        }
+        return this;
+    }
+
+    public JSONWriter value(long value) {
+        separator();
+        _buf.append(value);
+        return this;
+    }
+
+    public JSONWriter value(boolean value) {
+        separator();
+        _buf.append(value);
+        return this;
+    }
+
+    /**
+     * Writes a number rounded to at most the given decimals, trailing zeros are dropped.
+     * NaN and infinite values are written as null.
+     */
+    public JSONWriter value(double value, int decimals) {
+        separator();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            _buf.append("null");
+            return this;
+        }
+        if (decimals > MAX_DECIMALS) {
+            decimals = MAX_DECIMALS;
+        }
+        final long scale = FixedPointParser.POW10[decimals];
+        final double scaled = Math.abs(value) * scale;
+        if (scaled >= Long.MAX_VALUE) {
+            // Too large for fixed-point, rare enough to accept the allocation
+            _buf.append(value);
+            return this;
+        }
+        final long rounded = (long) (scaled + 0.5);
+        long integer = rounded / scale;
+        long fraction = rounded % scale;
+        if (value < 0 && rounded != 0) {
+            _buf.append('-');
+        }
+        _buf.append(integer);
+        if (fraction != 0) {
+            int digits = decimals;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            _buf.append('.');
+            for (long p = FixedPointParser.POW10[digits - 1]; p > fraction && p > 1; p /= 10) {
+                _buf.append('0');
+            }
+            _buf.append(fraction);
+        }
+        return this;
+    }
+
+    public JSONWriter name(String name, String value) {
+        return name(name).value(value);
+    }
+
+    public JSONWriter name(String name, long value) {
+        return name(name).value(value);
+    }
+
+    public JSONWriter name(String name, boolean value) {
+        return name(name).value(value);
+    }
+
+    public JSONWriter name(String name, double value, int decimals) {
+        return name(name).value(value, decimals);
+    }
+
+    public int length() {
+        return _buf.length();
+    }
+
+    /**
+     * @return the buffer itself, valid until the next reset()
+     */
+    public CharSequence buffer() {
+        return _buf;
+    }
+
+    @Override
+    public String toString() {
+        return _buf.toString();
+    }
+
+    private void push() {
+        if (_depth + 1 >= MAX_DEPTH) {
+            throw new IllegalStateException("JSON nesting too deep");
+        }
+        _first[++_depth] = true;
+    }
+
+    private void separator() {
+        if (_afterName) {
+            _afterName = false;
+            return;
+        }
+        if (_first[_depth]) {
+            _first[_depth] = false;
+        }
+        else {
+            _buf.append(',');
+        }
+    }
+
+    private void string(String value) {
+        _buf.append('"');
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    _buf.append("\\\"");
+                    break;
+                case '\\':
+                    _buf.append("\\\\");
+                    break;
+                case '\n':
+                    _buf.append("\\n");
+                    break;
+                case '\r':
+                    _buf.append("\\r");
+                    break;
+                case '\t':
+                    _buf.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        _buf.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    }
+                    else {
+                        _buf.append(c);
+                    }
+            }
+        }
+        _buf.append('"');
+    }
+}
@@ -0,0 +1,245 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import com.esri.cordova.geolocation.model.NMEAEpoch;
+
+/**
+ * Constant velocity Kalman filter that smooths NMEA positions natively, so apps do not have to
+ * run their own smoother on every callback.
+ *
+ * The state is east, north, east velocity, north velocity in a local tangent plane around the
+ * first fix. Acceleration is modelled as white noise. Positions are observed with the GST
+ * latitude error, or HDOP times a nominal range error, as standard deviation. VTG or RMC speed
+ * and course are observed as a velocity. The observations are independent, so they are applied
+ * as scalar updates and no matrix is ever inverted. All math runs on preallocated primitive
+ * arrays. Not threadsafe.
+ */
+public final class KalmanFilter implements EpochFilter {
+
+    public static final int STATE_SIZE = 4;
+    private static final int E = 0, N = 1, VE = 2, VN = 3;
+
+    private static final double EARTH_RADIUS = 6378137.0; // WGS84 semi-major axis, metres
+    private static final double VELOCITY_SIGMA = 0.2; // metres per second
+    private static final double INITIAL_VELOCITY_SIGMA = 10.0;
+    private static final long MAX_GAP_MS = 10000; // restart after a longer outage
+    private static final double MAX_OFFSET = 10000; // metres, re-center the tangent plane beyond this
+
+    private final double _processNoise; // acceleration variance, (m/s^2)^2
+
+    private final double[] _x = new double[STATE_SIZE];
+    private final double[] _p = new double[STATE_SIZE * STATE_SIZE]; // row-major covariance
+    private final double[] _gain = new double[STATE_SIZE];
+    private final double[] _row = new double[STATE_SIZE];
+
+    private boolean _initialized = false;
+    private long _lastTimestamp;
+    private double _originLatitude; // degrees
+    private double _originLongitude;
+    private double _metresPerDegreeLatitude;
+    private double _metresPerDegreeLongitude;
+
+    /**
+     * @param acceleration Standard deviation of the unmodelled acceleration in m/s^2.
+     *                     Larger values follow manoeuvres faster, smaller values smooth more.
+     */
+    public KalmanFilter(double acceleration) {
+        _processNoise = acceleration * acceleration;
+    }
+
+    @Override
+    public void apply(NMEAEpoch epoch) {
+        if (!epoch.has(NMEAEpoch.POSITION) || !epoch.has(NMEAEpoch.TIMESTAMP) || epoch.quality == 0) {
+            return;
+        }
+        final double sigma = StaticAverager.sigma(epoch);
+        final long dtMs = epoch.timestamp - _lastTimestamp;
+        if (!_initialized || dtMs < 0 || dtMs > MAX_GAP_MS) {
+            initialize(epoch, sigma);
+        }
+        else {
+            predict(dtMs / 1000.0);
+            double longitude = epoch.longitude - _originLongitude;
+            if (longitude >= 180) {
+                longitude -= 360;
+            }
+            else if (longitude < -180) {
+                longitude += 360;
+            }
+            final double east = longitude * _metresPerDegreeLongitude;
+            final double north = (epoch.latitude - _originLatitude) * _metresPerDegreeLatitude;
+            update(E, east, sigma * sigma);
+            update(N, north, sigma * sigma);
+            if (epoch.has(NMEAEpoch.SPEED) && epoch.has(NMEAEpoch.BEARING)) {
+                final double course = Math.toRadians(epoch.bearing);
+                update(VE, epoch.speed * Math.sin(course), VELOCITY_SIGMA * VELOCITY_SIGMA);
+                update(VN, epoch.speed * Math.cos(course), VELOCITY_SIGMA * VELOCITY_SIGMA);
+            }
+            if (Math.abs(_x[E]) > MAX_OFFSET || Math.abs(_x[N]) > MAX_OFFSET) {
+                recenter();
+            }
+        }
+        _lastTimestamp = epoch.timestamp;
+        write(epoch);
+    }
+
+    public void clear() {
+        _initialized = false;
+    }
+
+    /**
+     * @return the current state, east, north, east velocity, north velocity in metres and m/s
+     */
+    public double state(int index) {
+        return _x[index];
+    }
+
+    /**
+     * @return covariance element in row-major order
+     */
+    public double covariance(int row, int column) {
+        return _p[row * STATE_SIZE + column];
+    }
+
+    private void initialize(NMEAEpoch epoch, double sigma) {
+        setOrigin(epoch.latitude, epoch.longitude);
+        for (int i = 0; i < _p.length; i++) {
+            _p[i] = 0;
+        }
+        _x[E] = 0;
+        _x[N] = 0;
+        _x[VE] = 0;
+        _x[VN] = 0;
+        _p[E * STATE_SIZE + E] = sigma * sigma;
+        _p[N * STATE_SIZE + N] = sigma * sigma;
+        _p[VE * STATE_SIZE + VE] = INITIAL_VELOCITY_SIGMA * INITIAL_VELOCITY_SIGMA;
+        _p[VN * STATE_SIZE + VN] = INITIAL_VELOCITY_SIGMA * INITIAL_VELOCITY_SIGMA;
+        if (epoch.has(NMEAEpoch.SPEED) && epoch.has(NMEAEpoch.BEARING)) {
+            final double course = Math.toRadians(epoch.bearing);
+            _x[VE] = epoch.speed * Math.sin(course);
+            _x[VN] = epoch.speed * Math.cos(course);
+            _p[VE * STATE_SIZE + VE] = VELOCITY_SIGMA * VELOCITY_SIGMA;
+            _p[VN * STATE_SIZE + VN] = VELOCITY_SIGMA * VELOCITY_SIGMA;
+        }
+        _initialized = true;
+    }
+
+    /**
+     * x = F x, P = F P F' + Q with F = [I dt*I; 0 I]. Each axis is an independent position and
+     * velocity pair, F is expanded by hand.
+     */
+    private void predict(double dt) {
+        _x[E] += dt * _x[VE];
+        _x[N] += dt * _x[VN];
+
+        final double[] p = _p;
+        // P F': column j += dt * column j+2 for the position columns
+        for (int r = 0; r < STATE_SIZE; r++) {
+            p[r * STATE_SIZE + E] += dt * p[r * STATE_SIZE + VE];
+            p[r * STATE_SIZE + N] += dt * p[r * STATE_SIZE + VN];
+        }
+        // F (P F'): row i += dt * row i+2 for the position rows
+        for (int c = 0; c < STATE_SIZE; c++) {
+            p[E * STATE_SIZE + c] += dt * p[VE * STATE_SIZE + c];
+            p[N * STATE_SIZE + c] += dt * p[VN * STATE_SIZE + c];
+        }
+
+        // White noise acceleration, per axis q * [dt^3/3 dt^2/2; dt^2/2 dt]
+        final double q = _processNoise;
+        final double pos = q * dt * dt * dt / 3;
+        final double cross = q * dt * dt / 2;
+        final double vel = q * dt;
+        p[E * STATE_SIZE + E] += pos;
+        p[N * STATE_SIZE + N] += pos;
+        p[E * STATE_SIZE + VE] += cross;
+        p[VE * STATE_SIZE + E] += cross;
+        p[N * STATE_SIZE + VN] += cross;
+        p[VN * STATE_SIZE + N] += cross;
+        p[VE * STATE_SIZE + VE] += vel;
+        p[VN * STATE_SIZE + VN] += vel;
+    }
+
+    /**
+     * Scalar update for an observation of state element i with the given variance.
+     */
+    private void update(int i, double z, double variance) {
+        final double[] p = _p;
+        final double s = p[i * STATE_SIZE + i] + variance;
+        if (s <= 0) {
+            return;
+        }
+        final double innovation = z - _x[i];
+        for (int r = 0; r < STATE_SIZE; r++) {
+            _gain[r] = p[r * STATE_SIZE + i] / s;
+            _row[r] = p[i * STATE_SIZE + r];
+        }
+        for (int r = 0; r < STATE_SIZE; r++) {
+            _x[r] += _gain[r] * innovation;
+        }
+        // P = P - K (row i of P), then symmetrize against rounding
+        for (int r = 0; r < STATE_SIZE; r++) {
+            for (int c = 0; c < STATE_SIZE; c++) {
+                p[r * STATE_SIZE + c] -= _gain[r] * _row[c];
+            }
+        }
+        for (int r = 0; r < STATE_SIZE; r++) {
+            for (int c = r + 1; c < STATE_SIZE; c++) {
+                final double mean = (p[r * STATE_SIZE + c] + p[c * STATE_SIZE + r]) / 2;
+                p[r * STATE_SIZE + c] = mean;
+                p[c * STATE_SIZE + r] = mean;
+            }
+        }
+    }
+
+    private void setOrigin(double latitude, double longitude) {
+        _originLatitude = latitude;
+        _originLongitude = longitude;
+        _metresPerDegreeLatitude = Math.toRadians(EARTH_RADIUS);
+        _metresPerDegreeLongitude = _metresPerDegreeLatitude * Math.max(Math.cos(Math.toRadians(latitude)), 1e-6);
+    }
+
+    private void recenter() {
+        setOrigin(latitude(), longitude());
+        _x[E] = 0;
+        _x[N] = 0;
+    }
+
+    private double latitude() {
+        return _originLatitude + _x[N] / _metresPerDegreeLatitude;
+    }
+
+    private double longitude() {
+        double longitude = _originLongitude + _x[E] / _metresPerDegreeLongitude;
+        if (longitude >= 180) {
+            longitude -= 360;
+        }
+        else if (longitude < -180) {
+            longitude += 360;
+        }
+        return longitude;
+    }
+
+    private void write(NMEAEpoch epoch) {
+        epoch.set(NMEAEpoch.FILTERED);
+        epoch.filteredLatitude = latitude();
+        epoch.filteredLongitude = longitude();
+        epoch.filteredVelocityEast = _x[VE];
+        epoch.filteredVelocityNorth = _x[VN];
+        System.arraycopy(_p, 0, epoch.filteredCovariance, 0, _p.length);
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import com.esri.cordova.geolocation.model.NMEAEpoch;
+
+/**
+ * FIFO buffer of the last N positions that keeps their geometric center and mean accuracy up to
+ * date in O(1) per epoch: the new sample is added to running sums and the evicted one is
+ * subtracted, nothing is re-scanned.
+ *
+ * Positions are summed as integer nanodegree offsets from a reference point, accuracies as
+ * integer micrometres, so the sums are exact and do not drift however long the buffer runs.
+ * Longitude offsets are wrapped to +/-180 degrees so a buffer spanning the antimeridian works.
+ * Not threadsafe.
+ */
+public final class LocationBuffer implements EpochFilter {
+
+    private static final long HALF_TURN = 180 * FixedPointParser.NANO_DEGREES;
+    private static final long FULL_TURN = 360 * FixedPointParser.NANO_DEGREES;
+    private static final double MICROMETRES = 1e6;
+    private static final long NO_ACCURACY = Long.MIN_VALUE;
+
+    private final long[] _latitudes; // nanodegree offsets from _referenceLatitude
+    private final long[] _longitudes; // nanodegree offsets from _referenceLongitude
+    private final long[] _accuracies; // micrometres, NO_ACCURACY if not reported
+    private int _head = 0; // oldest sample
+    private int _size = 0;
+
+    private long _referenceLatitude;
+    private long _referenceLongitude;
+    private long _latitudeSum = 0;
+    private long _longitudeSum = 0;
+    private long _accuracySum = 0;
+    private int _accuracyCount = 0;
+
+    /**
+     * @param capacity Maximum number of positions averaged, at least 1
+     */
+    public LocationBuffer(int capacity) {
+        final int size = Math.max(capacity, 1);
+        _latitudes = new long[size];
+        _longitudes = new long[size];
+        _accuracies = new long[size];
+    }
+
+    /**
+     * Adds the epoch's position, evicting the oldest one if the buffer is full, and writes the
+     * buffered values back into the epoch. Epochs without a position are left unchanged. The
+     * accuracy is the GST, GBS or PUBX error in metres; GGA's accuracy is the unitless HDOP.
+     */
+    @Override
+    public void apply(NMEAEpoch epoch) {
+        if (!epoch.has(NMEAEpoch.POSITION)) {
+            return;
+        }
+        add(epoch.latitudeNanoDegrees, epoch.longitudeNanoDegrees,
+                epoch.has(NMEAEpoch.RTK_ACCURACY) ? epoch.rtkAccuracy : Double.NaN);
+
+        epoch.set(NMEAEpoch.BUFFERED);
+        epoch.bufferSize = _size;
+        epoch.bufferedLatitude = (double) latitudeNanoDegrees() / FixedPointParser.NANO_DEGREES;
+        epoch.bufferedLongitude = (double) longitudeNanoDegrees() / FixedPointParser.NANO_DEGREES;
+        epoch.bufferedAccuracy = accuracy();
+    }
+
+    /**
+     * @param accuracy Horizontal accuracy in metres, NaN if unknown
+     */
+    public void add(long latitudeNanoDegrees, long longitudeNanoDegrees, double accuracy) {
+        if (_size == 0) {
+            _referenceLatitude = latitudeNanoDegrees;
+            _referenceLongitude = longitudeNanoDegrees;
+        }
+        final int slot;
+        if (_size == _latitudes.length) {
+            slot = _head;
+            _latitudeSum -= _latitudes[slot];
+            _longitudeSum -= _longitudes[slot];
+            if (_accuracies[slot] != NO_ACCURACY) {
+                _accuracySum -= _accuracies[slot];
+                _accuracyCount--;
+            }
+            _head = (_head + 1) % _latitudes.length;
+        }
+        else {
+            slot = (_head + _size) % _latitudes.length;
+            _size++;
+        }
+
+        _latitudes[slot] = latitudeNanoDegrees - _referenceLatitude;
+        _longitudes[slot] = wrap(longitudeNanoDegrees - _referenceLongitude);
+        _latitudeSum += _latitudes[slot];
+        _longitudeSum += _longitudes[slot];
+        if (Double.isNaN(accuracy)) {
+            _accuracies[slot] = NO_ACCURACY;
+        }
+        else {
+            _accuracies[slot] = Math.round(accuracy * MICROMETRES);
+            _accuracySum += _accuracies[slot];
+            _accuracyCount++;
+        }
+    }
+
+    public void clear() {
+        _head = 0;
+        _size = 0;
+        _latitudeSum = 0;
+        _longitudeSum = 0;
+        _accuracySum = 0;
+        _accuracyCount = 0;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    public int capacity() {
+        return _latitudes.length;
+    }
+
+    public boolean isFull() {
+        return _size == _latitudes.length;
+    }
+
+    public long latitudeNanoDegrees() {
+        return _size == 0 ? 0 : _referenceLatitude + divide(_latitudeSum, _size);
+    }
+
+    public long longitudeNanoDegrees() {
+        return _size == 0 ? 0 : wrap(_referenceLongitude + divide(_longitudeSum, _size));
+    }
+
+    /**
+     * @return mean accuracy in metres of the buffered positions that reported one, NaN if none did
+     */
+    public double accuracy() {
+        return _accuracyCount == 0 ? Double.NaN : (double) _accuracySum / _accuracyCount / MICROMETRES;
+    }
+
+    // Rounds half away from zero
+    private static long divide(long sum, int count) {
+        return sum >= 0 ? (sum + count / 2) / count : -((-sum + count / 2) / count);
+    }
+
+    private static long wrap(long nanoDegrees) {
+        if (nanoDegrees >= HALF_TURN) {
+            return nanoDegrees - FULL_TURN;
+        }
+        if (nanoDegrees < -HALF_TURN) {
+            return nanoDegrees + FULL_TURN;
+        }
+        return nanoDegrees;
+    }
+}
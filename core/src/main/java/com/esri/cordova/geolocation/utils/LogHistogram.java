@@ -0,0 +1,128 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram with log-linear buckets in the style of HdrHistogram: every power of two
+ * is split into 32 linear sub-buckets, so recorded values keep about 3% relative precision over
+ * the whole range at a fixed 9 KB. Values above 2^40 - 1, 18 minutes in nanoseconds, are clamped.
+ * Any thread may record. Readers see a consistent count and sum per field, the percentiles of a
+ * histogram that is being recorded to may lag by the values in flight.
+ */
+public final class LogHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+    private static final int BUCKETS = SUB_COUNT * (MAX_BITS - SUB_BITS + 1);
+
+    private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong _count = new AtomicLong();
+    private final AtomicLong _sum = new AtomicLong();
+    private final AtomicLong _max = new AtomicLong();
+
+    /**
+     * @param value Non-negative value, typically nanoseconds
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        else if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+        _counts.incrementAndGet(index(value));
+        _count.incrementAndGet();
+        _sum.addAndGet(value);
+        long max = _max.get();
+        while (value > max && !_max.compareAndSet(max, value)) {
+            max = _max.get();
+        }
+    }
+
+    public long count() {
+        return _count.get();
+    }
+
+    public long max() {
+        return _max.get();
+    }
+
+    public double mean() {
+        final long count = _count.get();
+        return count == 0 ? 0 : (double) _sum.get() / count;
+    }
+
+    /**
+     * @param percentile 0 to 100
+     * @return The highest value equivalent to the value at the percentile, 0 if nothing was recorded
+     */
+    public long percentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += _counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += _counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highest(i), _max.get());
+            }
+        }
+        return _max.get();
+    }
+
+    /**
+     * Writes count, mean, p50, p90, p99 and max as a JSON object.
+     * @param scale Divisor applied to the values, e.g. 1e6 to write nanoseconds as milliseconds
+     */
+    public JSONWriter write(JSONWriter writer, double scale, int decimals) {
+        return writer.beginObject()
+                .name("count", count())
+                .name("mean", mean() / scale, decimals)
+                .name("p50", percentile(50) / scale, decimals)
+                .name("p90", percentile(90) / scale, decimals)
+                .name("p99", percentile(99) / scale, decimals)
+                .name("max", max() / scale, decimals)
+                .endObject();
+    }
+
+    static int index(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) ((value >>> shift) - SUB_COUNT);
+    }
+
+    static long highest(int index) {
+        if (index < 2 * SUB_COUNT) {
+            return index;
+        }
+        final int shift = index / SUB_COUNT - 1;
+        final long lowest = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
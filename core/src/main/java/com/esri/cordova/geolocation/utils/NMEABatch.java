@@ -0,0 +1,126 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import com.esri.cordova.geolocation.model.NMEAEpoch;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Accumulates epochs so several of them can be delivered in one callback. Epochs added here
+ * are owned by the batch until {@link #clear(NMEAEpochPool)} hands them back to the pool.
+ * Not threadsafe, callers synchronize on the batch.
+ */
+public final class NMEABatch {
+
+    private final NMEAEpoch[] _epochs;
+    private final long[] _timestamps;
+    private final ByteBuffer _binary;
+    private int _count = 0;
+    private long _openedAt = 0;
+
+    /**
+     * @param capacity Maximum number of epochs per batch
+     */
+    public NMEABatch(int capacity) {
+        _epochs = new NMEAEpoch[capacity];
+        _timestamps = new long[capacity];
+        _binary = ByteBuffer.allocate(capacity * NMEABinaryEncoder.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @param epoch Parsed epoch, now owned by the batch
+     * @param timestamp NMEA message timestamp
+     * @param now Current time in ms, used for the batch interval
+     * @return true if the batch is full and should be flushed
+     */
+    public boolean add(NMEAEpoch epoch, long timestamp, long now) {
+        if (_count == 0) {
+            _openedAt = now;
+        }
+        _epochs[_count] = epoch;
+        _timestamps[_count] = timestamp;
+        _count++;
+        return _count == _epochs.length;
+    }
+
+    public int size() {
+        return _count;
+    }
+
+    public boolean isEmpty() {
+        return _count == 0;
+    }
+
+    /**
+     * @return true if the oldest epoch has waited at least intervalMs
+     */
+    public boolean isDue(long now, long intervalMs) {
+        return _count > 0 && now - _openedAt >= intervalMs;
+    }
+
+    public NMEAEpoch epoch(int index) {
+        return _epochs[index];
+    }
+
+    public long timestamp(int index) {
+        return _timestamps[index];
+    }
+
+    /**
+     * Streams the batch as {"provider":..,"batch":[{"timestamp":..,"message":{..}},..]}
+     */
+    public String toJSON(String provider, JSONWriter writer, int precision) {
+        writer.reset().beginObject();
+        writer.name("provider", provider);
+        writer.name("batch").beginArray();
+        for (int i = 0; i < _count; i++) {
+            writer.beginObject();
+            writer.name("timestamp", _timestamps[i]);
+            writer.name("message");
+            GPSLocation.writeLocation(_epochs[i], writer, precision);
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+        return writer.toString();
+    }
+
+    /**
+     * @return all epochs as consecutive binary records, see {@link NMEABinaryEncoder}
+     */
+    public byte[] toBinary() {
+        _binary.clear();
+        for (int i = 0; i < _count; i++) {
+            NMEABinaryEncoder.encode(_epochs[i], _timestamps[i], _binary);
+        }
+        return Arrays.copyOf(_binary.array(), _binary.position());
+    }
+
+    /**
+     * Returns all epochs to the pool and empties the batch.
+     */
+    public void clear(NMEAEpochPool pool) {
+        for (int i = 0; i < _count; i++) {
+            pool.release(_epochs[i]);
+            _epochs[i] = null;
+        }
+        _count = 0;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import com.esri.cordova.geolocation.model.NMEAEpoch;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Packs NMEA epochs into fixed size little-endian records for the binary transport.
+ * The layout is mirrored by AdvancedGeolocation.decodeEpochs() in www/AdvancedGeolocation.js,
+ * keep both in sync and bump VERSION when it changes.
+ *
+ * <pre>
+ * offset type    field
+ *  0     uint8   version
+ *  1     uint8   quality
+ *  2     uint8   fixtype
+ *  3     uint8   number of satellites used
+ *  4     uint32  presence bits, see NMEAEpoch
+ *  8     float64 epoch timestamp, ms since 1970
+ * 16     float64 NMEA message timestamp, ms since 1970
+ * 24     float64 latitude
+ * 32     float64 longitude
+ * 40     float32 altitude
+ * 44     float32 altitudeDifferceEllipsoid
+ * 48     float32 accuracy
+ * 52     float32 speed
+ * 56     float32 bearing
+ * 60     float32 altitude_accuracy
+ * 64     float32 rtk_accuracy
+ * 68     float32 rtk_altitude_accuracy
+ * 72     float32 pdop
+ * 76     float32 hdop
+ * 80     float32 vdop
+ * 84     uint32  reserved
+ * </pre>
+ * Raw sentences and satellite lists are not part of the binary record.
+ * Not threadsafe, use one instance per thread.
+ */
+public final class NMEABinaryEncoder {
+
+    public static final int VERSION = 1;
+    public static final int RECORD_SIZE = 88;
+
+    private final byte[] _record = new byte[RECORD_SIZE];
+    private final ByteBuffer _recordBuffer = ByteBuffer.wrap(_record).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Encodes a single epoch into a reused array. The contents are only valid until the next
+     * call, which is fine for PluginResult since it base64 encodes the bytes right away.
+     */
+    public byte[] encode(NMEAEpoch epoch, long timestamp) {
+        _recordBuffer.clear();
+        encode(epoch, timestamp, _recordBuffer);
+        return _record;
+    }
+
+    /**
+     * Appends one record at the buffer's position. The buffer must be little-endian.
+     */
+    public static void encode(NMEAEpoch e, long timestamp, ByteBuffer out) {
+        out.put((byte) VERSION);
+        out.put((byte) e.quality);
+        out.put((byte) e.fixtype);
+        out.put((byte) Math.min(e.satelliteCount, 255));
+        out.putInt(e.present);
+        out.putDouble(e.timestamp);
+        out.putDouble(timestamp);
+        out.putDouble(e.latitude);
+        out.putDouble(e.longitude);
+        out.putFloat((float) e.altitude);
+        out.putFloat((float) e.altitudeDifferceEllipsoid);
+        out.putFloat((float) e.accuracy);
+        out.putFloat((float) e.speed);
+        out.putFloat((float) e.bearing);
+        out.putFloat((float) e.altitudeAccuracy);
+        out.putFloat((float) e.rtkAccuracy);
+        out.putFloat((float) e.rtkAltitudeAccuracy);
+        out.putFloat((float) e.pdop);
+        out.putFloat((float) e.hdop);
+        out.putFloat((float) e.vdop);
+        out.putInt(0);
+    }
+}
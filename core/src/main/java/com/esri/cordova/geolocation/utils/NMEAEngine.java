@@ -0,0 +1,415 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import com.esri.cordova.geolocation.model.NMEAEpoch;
+import com.esri.cordova.geolocation.model.NMEAOptions;
+
+import java.util.ArrayList;
+
+/**
+ * The NMEA hot path without any platform code: parses messages into epochs, runs the configured
+ * filters and delivers each epoch through flow control and batching to a transport.
+ * GPSController adapts it to Android threads and the Cordova callback, NMEAReplay and the
+ * benchmarks drive it on a plain JVM.
+ *
+ * All methods must be called on one thread, except {@link #ack(int)} and {@link #flush()}.
+ */
+public final class NMEAEngine implements NMEAPipeline.Sink {
+
+    public static final String PROVIDER = "NMEA";
+
+    private static final int MAX_BATCH_SIZE = 64; // used when only batchIntervalMs is set
+    private static final int MUST_DELIVER_QUEUE_SIZE = 16;
+
+    /**
+     * Receives the serialized payloads, one call per epoch or per batch.
+     */
+    public interface Transport {
+        void send(String json);
+
+        /**
+         * @param data Encoded payload, may be reused once the call returns
+         */
+        void send(byte[] data);
+    }
+
+    /**
+     * Runs the engine's delayed tasks on the engine's thread.
+     */
+    public interface Scheduler {
+        void post(Runnable task, long delayMs);
+
+        void cancel(Runnable task);
+
+        /**
+         * @return Monotonic time in milliseconds
+         */
+        long uptimeMillis();
+    }
+
+    private final NMEAOptions _options;
+    private final Transport _transport;
+    private final Scheduler _scheduler;
+    private final GPSLocation _location;
+    private final NMEAPipeline _pipeline;
+    private final EpochFilter[] _filters;
+    private final NMEABatch _batch; // null unless batching is configured
+    private final FlowControl _flowControl; // null unless credits are configured
+    private final JSONWriter _writer = new JSONWriter(); // Reused for every epoch
+    private final NMEABinaryEncoder _encoder = new NMEABinaryEncoder();
+    private final PipelineStats _stats;
+    private final EpochAssembler _assembler;
+    private final SkyView _skyView; // null unless the skyView option is set
+    private final JSONWriter _skyViewWriter = new JSONWriter();
+    private boolean _skyViewSent = false;
+    private final FixArbitrator _arbitrator; // null unless the arbitrate option is set
+    private int _timeoutEpoch = 0; // EpochAssembler.waiting() of the epoch the timeout is set for
+
+    /**
+     * @param options NMEA options
+     * @param bufferSize Number of epochs to average, 0 disables the buffer
+     */
+    public NMEAEngine(NMEAOptions options, int bufferSize, Transport transport, Scheduler scheduler) {
+        _options = options;
+        _transport = transport;
+        _scheduler = scheduler;
+
+        final boolean batching = options.batchSize > 1 || options.batchIntervalMs > 0;
+        final int batchCapacity = options.batchSize > 1 ? options.batchSize : MAX_BATCH_SIZE;
+        _batch = batching ? new NMEABatch(batchCapacity) : null;
+        _flowControl = options.credits > 0
+                ? new FlowControl(options.credits, options.mustDeliver, MUST_DELIVER_QUEUE_SIZE)
+                : null;
+
+        // Batched and held epochs wait for delivery, size the pool so they are all recycled
+        int poolSize = batching ? batchCapacity + 3 : 3; // the reorder window keeps one more
+        if (_flowControl != null) {
+            poolSize += MUST_DELIVER_QUEUE_SIZE + 1;
+        }
+        if (options.arbitrate) {
+            poolSize += FixArbitrator.MAX_HELD_EPOCHS + 1; // held epochs and a Location only record
+        }
+        _location = new GPSLocation(new NMEAEpochPool(poolSize));
+        final NMEAParserRegistry parsers = NMEAParserRegistry.createDefault();
+        _stats = new PipelineStats(parsers);
+        _pipeline = new NMEAPipeline(_location, parsers, this, _stats, options.reorderWindow);
+        _assembler = _pipeline.getAssembler();
+        if (options.epochSentences != null) {
+            _assembler.expect(parsers, options.epochSentences);
+        }
+        else if (options.learnEpochSentences) {
+            _assembler.learn();
+        }
+
+        _arbitrator = options.arbitrate
+                ? new FixArbitrator(options.arbitrationWindowMs, _location.getPool(), _fixSink, scheduler)
+                : null;
+        _skyView = options.skyView ? new SkyView() : null;
+        _location.setSkyView(_skyView);
+
+        final ArrayList<EpochFilter> filters = new ArrayList<EpochFilter>();
+        if (bufferSize > 0) {
+            filters.add(options.averaging == NMEAOptions.AVERAGING_WEIGHTED
+                    ? new StaticAverager(bufferSize, options.outlierThreshold)
+                    : new LocationBuffer(bufferSize));
+        }
+        if (options.kalman) {
+            filters.add(new KalmanFilter(options.kalmanAcceleration));
+        }
+        _filters = filters.toArray(new EpochFilter[filters.size()]);
+    }
+
+    /**
+     * Parses one NMEA message, delivering the epoch it completes.
+     * @return false if the message is not an NMEA sentence
+     * @see GPSLocation#parseError()
+     */
+    public boolean process(String message, long timestamp) {
+        final int gsv = _skyView != null ? _skyView.sentenceCount() : 0;
+        final boolean nmea = _pipeline.process(message, timestamp);
+        // The sky view is sent once the GSV sentences of a burst are followed by another type
+        if (_skyView != null && _skyView.isDirty() && !_skyView.isReceiving()
+                && _skyView.sentenceCount() == gsv) {
+            sendSkyView(timestamp);
+        }
+        if (_options.epochTimeoutMs > 0) {
+            final int waiting = _assembler.waiting();
+            if (waiting != 0 && waiting != _timeoutEpoch) {
+                _timeoutEpoch = waiting;
+                _scheduler.cancel(_timeoutTask);
+                _scheduler.post(_timeoutTask, _options.epochTimeoutMs);
+            }
+        }
+        return nmea;
+    }
+
+    public GPSLocation getLocation() {
+        return _location;
+    }
+
+    public SkyView getSkyView() {
+        return _skyView;
+    }
+
+    /**
+     * Sends the satellites that changed since the last sky view, all of them the first time.
+     * Sky views are not batched and do not consume credits.
+     */
+    private void sendSkyView(long timestamp) {
+        final long started = System.nanoTime();
+        final String json = _skyView.write(_skyViewWriter.reset(), timestamp, !_skyViewSent).toString();
+        _skyViewSent = true;
+        final long encoded = System.nanoTime();
+        _transport.send(json);
+        measured(started, encoded, json.length());
+    }
+
+    public PipelineStats getStats() {
+        return _stats;
+    }
+
+    /**
+     * @return Epochs held for credits, 0 without flow control
+     */
+    public int pendingCount() {
+        return _flowControl != null ? _flowControl.pendingCount() : 0;
+    }
+
+    public FixArbitrator getArbitrator() {
+        return _arbitrator;
+    }
+
+    /**
+     * Pairs an Android Location with the NMEA epoch of the same fix, see {@link FixArbitrator}.
+     * Ignored unless the arbitrate option is set. Values the Location does not have are NaN.
+     * @param time UTC time of the fix
+     * @param timestamp Time the Location was received
+     */
+    public void location(long time, double latitude, double longitude, double accuracy, double altitude,
+                         double speed, double bearing, long timestamp) {
+        if (_arbitrator != null) {
+            _arbitrator.location(time, latitude, longitude, accuracy, altitude, speed, bearing, timestamp);
+        }
+    }
+
+    /**
+     * Filters a finished epoch and passes it to the arbitrator, if any.
+     */
+    @Override
+    public void epoch(NMEAEpoch epoch, long timestamp) {
+        for (int i = 0; i < _filters.length; i++) {
+            _filters[i].apply(epoch);
+        }
+        _stats.epoch();
+        if (_arbitrator != null) {
+            _arbitrator.epoch(epoch, timestamp);
+            return;
+        }
+        offer(epoch, timestamp);
+    }
+
+    /**
+     * Holds an epoch if JavaScript is out of credits, otherwise delivers it.
+     */
+    private void offer(NMEAEpoch epoch, long timestamp) {
+        if (_flowControl != null && !_flowControl.offer(epoch, timestamp, _location.getPool())) {
+            return;
+        }
+        deliver(epoch, timestamp);
+    }
+
+    /**
+     * Sends an epoch right away, or adds it to the batch if batching is configured.
+     */
+    private void deliver(NMEAEpoch epoch, long timestamp) {
+        if (_batch == null) {
+            consumeCredit();
+            final long started = System.nanoTime();
+            if (_options.binary) {
+                final byte[] binary = _encoder.encode(epoch, timestamp);
+                final long encoded = System.nanoTime();
+                _transport.send(binary);
+                measured(started, encoded, binary.length);
+            }
+            else {
+                final String json = GPSLocation.writeMessage(
+                        PROVIDER, epoch, timestamp, _writer, _options.precision).toString();
+                final long encoded = System.nanoTime();
+                _transport.send(json);
+                measured(started, encoded, json.length());
+            }
+            _location.recycle(epoch);
+            return;
+        }
+
+        final boolean full;
+        final boolean opened;
+        synchronized (_batch) {
+            full = _batch.add(epoch, timestamp, _scheduler.uptimeMillis());
+            opened = _batch.size() == 1;
+        }
+        if (full) {
+            flush();
+        }
+        else if (opened && _options.batchIntervalMs > 0) {
+            _scheduler.cancel(_flushTask);
+            _scheduler.post(_flushTask, _options.batchIntervalMs);
+        }
+    }
+
+    /**
+     * Sends all batched epochs as one payload. Safe to call from any thread.
+     */
+    public void flush() {
+        if (_batch == null) {
+            return;
+        }
+        String json = null;
+        byte[] binary = null;
+        final long started;
+        synchronized (_batch) {
+            if (_batch.isEmpty()) {
+                return;
+            }
+            started = System.nanoTime();
+            if (_options.binary) {
+                binary = _batch.toBinary();
+            }
+            else {
+                json = _batch.toJSON(PROVIDER, _writer, _options.precision);
+            }
+            _batch.clear(_location.getPool());
+        }
+        consumeCredit();
+        final long encoded = System.nanoTime();
+        if (binary != null) {
+            _transport.send(binary);
+            measured(started, encoded, binary.length);
+        }
+        else {
+            _transport.send(json);
+            measured(started, encoded, json.length());
+        }
+    }
+
+    private void measured(long started, long encoded, int bytes) {
+        _stats.serialization.record(encoded - started);
+        _stats.send.record(System.nanoTime() - encoded);
+        _stats.payload(bytes);
+    }
+
+    private void consumeCredit() {
+        if (_flowControl != null) {
+            _flowControl.consume();
+        }
+    }
+
+    /**
+     * Grants credits for further payloads and schedules delivery of held epochs.
+     * @param credits Number of additional payloads the receiver accepts
+     * @return Flow control status JSON, or null if flow control is not enabled
+     */
+    public String ack(int credits) {
+        if (_flowControl == null) {
+            return null;
+        }
+        _flowControl.grant(credits);
+        _scheduler.post(_drainTask, 0);
+        return new JSONWriter(64).beginObject()
+                .name("credits", _flowControl.credits())
+                .name("pending", _flowControl.pendingCount())
+                .name("dropped", _flowControl.dropped())
+                .endObject().toString();
+    }
+
+    /**
+     * Cancels pending tasks, emits the epochs still being assembled, sends what is left in the
+     * batch and drops epochs held for credits.
+     */
+    public void finish() {
+        _scheduler.cancel(_flushTask);
+        _scheduler.cancel(_drainTask);
+        _scheduler.cancel(_timeoutTask);
+        _pipeline.flush();
+        if (_arbitrator != null) {
+            _arbitrator.flush();
+        }
+        flush();
+        if (_skyView != null && _skyView.isDirty()) {
+            sendSkyView(System.currentTimeMillis());
+        }
+        if (_flowControl != null) {
+            _flowControl.clear(_location.getPool());
+        }
+    }
+
+    private final FixArbitrator.Sink _fixSink = new FixArbitrator.Sink() {
+        @Override
+        public void fix(NMEAEpoch epoch, long timestamp) {
+            offer(epoch, timestamp);
+        }
+    };
+
+    private final FlowControl.Sink _deliverSink = new FlowControl.Sink() {
+        @Override
+        public void deliver(NMEAEpoch epoch, long timestamp) {
+            NMEAEngine.this.deliver(epoch, timestamp);
+        }
+    };
+
+    private final Runnable _drainTask = new Runnable() {
+        @Override
+        public void run() {
+            _flowControl.drain(_deliverSink);
+        }
+    };
+
+    /**
+     * Emits an epoch whose expected sentences did not all arrive within epochTimeoutMs.
+     */
+    private final Runnable _timeoutTask = new Runnable() {
+        @Override
+        public void run() {
+            if (_timeoutEpoch != 0 && _assembler.waiting() == _timeoutEpoch) {
+                _assembler.expire();
+            }
+        }
+    };
+
+    /**
+     * Flushes the batch once batchIntervalMs has passed since its first epoch.
+     */
+    private final Runnable _flushTask = new Runnable() {
+        @Override
+        public void run() {
+            boolean due;
+            synchronized (_batch) {
+                if (_batch.isEmpty()) {
+                    return;
+                }
+                due = _batch.isDue(_scheduler.uptimeMillis(), _options.batchIntervalMs);
+            }
+            if (due) {
+                flush();
+            }
+            else {
+                _scheduler.post(this, _options.batchIntervalMs);
+            }
+        }
+    };
+}
@@ -0,0 +1,58 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import com.esri.cordova.geolocation.model.NMEAEpoch;
+
+/**
+ * Small free list of {@link NMEAEpoch} records. Once the pool is warm, streaming epochs does not
+ * allocate. Records may be acquired and released on different threads.
+ */
+public final class NMEAEpochPool {
+
+    private final NMEAEpoch[] _free;
+    private int _size = 0;
+
+    public NMEAEpochPool(int capacity) {
+        _free = new NMEAEpoch[capacity];
+    }
+
+    /**
+     * @return a reset record, newly allocated only if the pool is empty
+     */
+    public synchronized NMEAEpoch acquire() {
+        if (_size == 0) {
+            return new NMEAEpoch();
+        }
+        final NMEAEpoch epoch = _free[--_size];
+        _free[_size] = null;
+        return epoch;
+    }
+
+    /**
+     * Resets a record and returns it to the pool. Records beyond capacity are left to the GC.
+     */
+    public synchronized void release(NMEAEpoch epoch) {
+        if (epoch == null) {
+            return;
+        }
+        epoch.reset();
+        if (_size < _free.length) {
+            _free[_size++] = epoch;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads NMEA logs sentence by sentence. Understands segments written by {@link NMEARecorder}
+ * and plain text logs with one sentence per line. A text line may start with a millisecond
+ * timestamp and a comma, e.g. <code>1479132000000,$GPGGA,...</code>; lines without one keep the
+ * previous timestamp. A plain log without any timestamps reports 0, see {@link #isTimed()}.
+ * Not threadsafe.
+ */
+public final class NMEALogReader implements Closeable {
+
+    private final InputStream _in;
+    private final boolean _recorded;
+    private final byte[] _line = new byte[0x10000];
+    private String _sentence = null;
+    private long _timestamp = 0;
+    private boolean _timed;
+
+    public NMEALogReader(File file) throws IOException {
+        _in = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+        _in.mark(NMEARecorder.HEADER_SIZE);
+        boolean recorded = true;
+        final byte[] header = new byte[NMEARecorder.HEADER_SIZE];
+        final int read = readFully(header, 0, header.length);
+        if (read < header.length || header[0] != 'N' || header[1] != 'M' || header[2] != 'E' || header[3] != 'A'
+                || header[4] != 'R' || header[5] != 'E' || header[6] != 'C') {
+            recorded = false;
+            _in.reset();
+        }
+        else if (header[7] != NMEARecorder.VERSION) {
+            _in.close();
+            throw new IOException("Unsupported NMEA recording version " + header[7] + " in " + file);
+        }
+        _recorded = recorded;
+        _timed = recorded;
+    }
+
+    /**
+     * Advances to the next sentence.
+     * @return false at the end of the log
+     */
+    public boolean next() throws IOException {
+        return _recorded ? nextRecord() : nextLine();
+    }
+
+    public String sentence() {
+        return _sentence;
+    }
+
+    public long timestamp() {
+        return _timestamp;
+    }
+
+    /**
+     * @return true if {@link #timestamp()} was read from the log, false while a text log has not
+     * had a line with a timestamp yet
+     */
+    public boolean isTimed() {
+        return _timed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _in.close();
+    }
+
+    private boolean nextRecord() throws IOException {
+        if (readFully(_line, 0, NMEARecorder.RECORD_OVERHEAD) < NMEARecorder.RECORD_OVERHEAD) {
+            return false;
+        }
+        long timestamp = 0;
+        for (int i = 7; i >= 0; i--) {
+            timestamp = (timestamp << 8) | (_line[i] & 0xFF);
+        }
+        final int length = (_line[8] & 0xFF) | (_line[9] & 0xFF) << 8;
+        // Unused tail of a segment that was not closed
+        if (length == 0) {
+            return false;
+        }
+        if (readFully(_line, 0, length) < length) {
+            throw new EOFException("Truncated NMEA record");
+        }
+        _timestamp = timestamp;
+        _sentence = ascii(0, length);
+        return true;
+    }
+
+    private boolean nextLine() throws IOException {
+        while (true) {
+            int length = 0;
+            int b;
+            while ((b = _in.read()) != -1 && b != '\n') {
+                if (length < _line.length) {
+                    _line[length++] = (byte) b;
+                }
+            }
+            if (length > 0 && _line[length - 1] == '\r') {
+                length--;
+            }
+            if (length == 0) {
+                if (b == -1) {
+                    return false;
+                }
+                continue;
+            }
+            int start = 0;
+            if (_line[0] >= '0' && _line[0] <= '9') {
+                long timestamp = 0;
+                while (start < length && _line[start] >= '0' && _line[start] <= '9') {
+                    timestamp = timestamp * 10 + (_line[start++] - '0');
+                }
+                if (start < length && (_line[start] == ',' || _line[start] == '\t' || _line[start] == ' ')) {
+                    start++;
+                }
+                _timestamp = timestamp;
+                _timed = true;
+            }
+            if (start < length && (_line[start] == '$' || _line[start] == '!')) {
+                _sentence = ascii(start, length);
+                return true;
+            }
+            // Not a sentence, skip
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private String ascii(int from, int to) {
+        // The hibyte constructor copies bytes straight to chars, NMEA is 7 bit ASCII
+        return new String(_line, 0, from, to - from);
+    }
+
+    private int readFully(byte[] buffer, int offset, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            final int read = _in.read(buffer, offset + total, length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+}
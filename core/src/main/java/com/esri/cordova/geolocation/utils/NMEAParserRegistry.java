@@ -0,0 +1,228 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+/**
+ * Maps NMEA sentence addresses to parsers. Addresses are packed into an int, six bits per
+ * character, and looked up in a small open addressing table, so dispatching a sentence costs
+ * one or two probes no matter how many parsers are registered.
+ *
+ * Parsers can be registered for a sentence type from any talker, e.g. "GGA" matches GPGGA,
+ * GNGGA, GLGGA, GAGGA and GBGGA, for one talker only, e.g. "GNGSA", or for a proprietary
+ * address such as "PUBX". A talker specific entry wins over a type entry.
+ */
+public final class NMEAParserRegistry {
+
+    public interface Parser {
+        void parse(NMEASentence sentence, GPSLocation location);
+    }
+
+    /**
+     * A registered parser and the index of the field holding the sentence UTC,
+     * or -1 if the sentence type has no time. The index numbers entries in registration
+     * order, from 0 to {@link #MAX_ENTRIES} - 1, for per-type arrays such as PipelineStats.
+     */
+    public static final class Entry {
+        public final String address;
+        public final Parser parser;
+        public final int timeField;
+        public final int index;
+
+        Entry(String address, Parser parser, int timeField, int index) {
+            this.address = address;
+            this.parser = parser;
+            this.timeField = timeField;
+            this.index = index;
+        }
+    }
+
+    // Set on keys that match a sentence type from any talker
+    private static final int ANY_TALKER = 1 << 30;
+    private static final int EMPTY = -1;
+    private static final int CAPACITY = 64; // power of two, at most half full
+    public static final int MAX_ENTRIES = CAPACITY / 2;
+
+    private final int[] _keys = new int[CAPACITY];
+    private final Entry[] _entries = new Entry[CAPACITY];
+    private final Entry[] _byIndex = new Entry[MAX_ENTRIES];
+    private int _size = 0;
+
+    public NMEAParserRegistry() {
+        for (int i = 0; i < CAPACITY; i++) {
+            _keys[i] = EMPTY;
+        }
+    }
+
+    /**
+     * @param address A three letter type such as "GGA", a full talker address such as "GNGGA",
+     *                or a proprietary address starting with 'P' such as "PUBX"
+     * @param parser Parser to run for matching sentences
+     * @param timeField Index of the field holding the UTC time of the epoch, -1 if none
+     */
+    public synchronized void register(String address, Parser parser, int timeField) {
+        if (address == null || address.length() < 3 || address.length() > 5) {
+            throw new IllegalArgumentException("Invalid NMEA address: " + address);
+        }
+        final int key = address.length() == 3 && address.charAt(0) != 'P'
+                ? pack(address, 0, 3) | ANY_TALKER
+                : pack(address, 0, address.length());
+        int slot = find(key);
+        final int index;
+        if (_keys[slot] == EMPTY) {
+            if (_size == MAX_ENTRIES) {
+                throw new IllegalStateException("NMEA parser registry is full");
+            }
+            _keys[slot] = key;
+            index = _size++;
+        }
+        else {
+            index = _entries[slot].index; // replacing a parser keeps its index
+        }
+        _entries[slot] = new Entry(address, parser, timeField, index);
+        _byIndex[index] = _entries[slot];
+    }
+
+    /**
+     * @param address A three letter type such as "GGA", or an address as passed to {@link #register}
+     * @return The entry registered for it, null if none
+     */
+    public synchronized Entry get(String address) {
+        if (address == null || address.length() < 3 || address.length() > 5) {
+            return null;
+        }
+        final boolean type = address.length() == 3 && address.charAt(0) != 'P';
+        int slot = find(type ? pack(address, 0, 3) | ANY_TALKER : pack(address, 0, address.length()));
+        if (_keys[slot] == EMPTY && address.length() == 5 && address.charAt(0) != 'P') {
+            slot = find(pack(address, 2, 5) | ANY_TALKER);
+        }
+        return _keys[slot] != EMPTY ? _entries[slot] : null;
+    }
+
+    public synchronized int size() {
+        return _size;
+    }
+
+    /**
+     * @param index 0 to {@link #size()} - 1
+     */
+    public synchronized Entry entry(int index) {
+        return _byIndex[index];
+    }
+
+    /**
+     * @return the entry for this sentence, or null if no parser is registered for it
+     */
+    public Entry lookup(NMEASentence sentence) {
+        final int length = sentence.length(0);
+        if (length < 3 || length > 5) {
+            return null;
+        }
+        final CharSequence text = sentence.text();
+        final int start = sentence.start(0);
+
+        int slot = find(pack(text, start, start + length));
+        if (_keys[slot] != EMPTY) {
+            return _entries[slot];
+        }
+        if (sentence.isTalkerSentence()) {
+            slot = find(pack(text, start + 2, start + 5) | ANY_TALKER);
+            if (_keys[slot] != EMPTY) {
+                return _entries[slot];
+            }
+        }
+        return null;
+    }
+
+    private int find(int key) {
+        int slot = (key * 0x9E3779B9) >>> 26; // top 6 bits, CAPACITY == 64
+        while (_keys[slot] != EMPTY && _keys[slot] != key) {
+            slot = (slot + 1) & (CAPACITY - 1);
+        }
+        return slot;
+    }
+
+    private static int pack(CharSequence text, int start, int end) {
+        int key = 0;
+        for (int i = start; i < end; i++) {
+            key = (key << 6) | ((text.charAt(i) - 0x20) & 0x3F);
+        }
+        return key;
+    }
+
+    /**
+     * @return a registry with all sentence types supported by {@link GPSLocation}
+     */
+    public static NMEAParserRegistry createDefault() {
+        final NMEAParserRegistry registry = new NMEAParserRegistry();
+        registry.register("GGA", new Parser() {
+            public void parse(NMEASentence sentence, GPSLocation location) {
+                location.parseGGA(sentence);
+            }
+        }, 1);
+        registry.register("GSA", new Parser() {
+            public void parse(NMEASentence sentence, GPSLocation location) {
+                location.parseGSA(sentence);
+            }
+        }, -1);
+        registry.register("GST", new Parser() {
+            public void parse(NMEASentence sentence, GPSLocation location) {
+                location.parseGST(sentence);
+            }
+        }, 1);
+        registry.register("VTG", new Parser() {
+            public void parse(NMEASentence sentence, GPSLocation location) {
+                location.parseVTG(sentence);
+            }
+        }, -1);
+        registry.register("ZDA", new Parser() {
+            public void parse(NMEASentence sentence, GPSLocation location) {
+                location.parseZDA(sentence);
+            }
+        }, 1);
+        registry.register("RMC", new Parser() {
+            public void parse(NMEASentence sentence, GPSLocation location) {
+                location.parseRMC(sentence);
+            }
+        }, 1);
+        registry.register("GNS", new Parser() {
+            public void parse(NMEASentence sentence, GPSLocation location) {
+                location.parseGNS(sentence);
+            }
+        }, 1);
+        registry.register("GSV", new Parser() {
+            public void parse(NMEASentence sentence, GPSLocation location) {
+                location.parseGSV(sentence);
+            }
+        }, -1);
+        registry.register("GLL", new Parser() {
+            public void parse(NMEASentence sentence, GPSLocation location) {
+                location.parseGLL(sentence);
+            }
+        }, 5);
+        registry.register("GBS", new Parser() {
+            public void parse(NMEASentence sentence, GPSLocation location) {
+                location.parseGBS(sentence);
+            }
+        }, 1);
+        registry.register("PUBX", new Parser() {
+            public void parse(NMEASentence sentence, GPSLocation location) {
+                location.parsePUBX(sentence);
+            }
+        }, -1); // only PUBX,00 carries a time, in field 2
+        return registry;
+    }
+}
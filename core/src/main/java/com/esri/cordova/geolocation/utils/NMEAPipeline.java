@@ -0,0 +1,104 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import com.esri.cordova.geolocation.model.NMEAEpoch;
+
+/**
+ * Turns NMEA messages into epochs: tokenizes each sentence, dispatches it to its parser and
+ * hands every completed epoch to a sink. Has no Android dependencies, so the same pipeline
+ * runs behind the live listener and on a plain JVM. Not threadsafe, use from a single thread.
+ */
+public final class NMEAPipeline {
+
+    public interface Sink {
+        /**
+         * @param epoch Detached epoch, owned by the sink. Recycle it with {@link GPSLocation#recycle}
+         * @param timestamp Timestamp of the message that completed the epoch
+         */
+        void epoch(NMEAEpoch epoch, long timestamp);
+    }
+
+    private final NMEASentence _sentence = new NMEASentence(); // Reused for every message
+    private final NMEAParserRegistry _parsers;
+    private final GPSLocation _location;
+    private final EpochAssembler _assembler;
+    private final PipelineStats _stats; // null if not measured
+
+    public NMEAPipeline(GPSLocation location, NMEAParserRegistry parsers, Sink sink) {
+        this(location, parsers, sink, null, EpochAssembler.DEFAULT_REORDER_WINDOW);
+    }
+
+    /**
+     * @param stats Counts sentences and errors by type and records epoch assembly latency, may be null
+     * @param reorderWindow See {@link EpochAssembler}
+     */
+    public NMEAPipeline(GPSLocation location, NMEAParserRegistry parsers, Sink sink, PipelineStats stats,
+                        int reorderWindow) {
+        _location = location;
+        _parsers = parsers;
+        _stats = stats;
+        _assembler = new EpochAssembler(location, sink, stats, reorderWindow);
+    }
+
+    /**
+     * Parses one message. Parser exceptions are passed on to the caller, field level errors are
+     * reported through {@link GPSLocation#parseError()}.
+     * @return false if the message is not an NMEA sentence
+     */
+    public boolean process(String message, long timestamp) {
+        if (!_sentence.reset(message)) {
+            if (_stats != null) {
+                _stats.invalid();
+            }
+            return false;
+        }
+        final NMEAParserRegistry.Entry entry = _parsers.lookup(_sentence);
+        if (_stats == null) {
+            _assembler.add(_sentence, entry, message, timestamp);
+            return true;
+        }
+
+        _stats.sentence(entry);
+        try {
+            _assembler.add(_sentence, entry, message, timestamp);
+        }
+        catch (RuntimeException exc) {
+            _stats.error(entry);
+            throw exc;
+        }
+        if (_location.parseError()) {
+            _stats.error(entry);
+        }
+        return true;
+    }
+
+    /**
+     * Emits the epochs still being assembled, e.g. when the stream stops.
+     */
+    public void flush() {
+        _assembler.flush();
+    }
+
+    public EpochAssembler getAssembler() {
+        return _assembler;
+    }
+
+    public GPSLocation getLocation() {
+        return _location;
+    }
+}
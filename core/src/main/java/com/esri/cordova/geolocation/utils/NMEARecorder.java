@@ -0,0 +1,325 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Append-only recorder of every raw NMEA sentence and its onNmeaMessage timestamp, written to
+ * memory-mapped segment files. Appending is a copy into the mapping and takes no lock, so the
+ * listener thread never waits for disk I/O. Segments rotate by size or age: the listener swaps
+ * in a segment that {@link #maintain()} mapped ahead of time, and maintain() also forces,
+ * truncates and closes the segment it replaced. {@link #sync()} flushes the current segment.
+ * Both run on another thread, e.g. the parser thread.
+ *
+ * <pre>
+ * segment  = header record*
+ * header   = "NMEAREC" uint8 version
+ * record   = int64 timestamp, uint16 length, length bytes of ASCII sentence   (little-endian)
+ * </pre>
+ * A closed segment is truncated to its content. A segment left behind by a crash keeps its
+ * mapped size, readers stop at the first record with length 0.
+ *
+ * {@link #record(String, long)} must only be called by one thread at a time.
+ */
+public final class NMEARecorder {
+
+    public static final int VERSION = 1;
+    public static final String SUFFIX = ".nmea";
+    private static final byte[] MAGIC = {'N', 'M', 'E', 'A', 'R', 'E', 'C', VERSION};
+    public static final int HEADER_SIZE = MAGIC.length;
+    public static final int RECORD_OVERHEAD = 10;
+    private static final int MAX_SENTENCE = 0xFFFF;
+
+    private final File _directory;
+    private final int _segmentSize;
+    private final long _rotateIntervalMs;
+
+    // Owned by the recording thread, published for sync() and close()
+    private volatile Segment _current = null;
+    // Mapped ahead by maintain(), taken by the recording thread
+    private final AtomicReference<Segment> _next = new AtomicReference<Segment>();
+    // Replaced by the recording thread, closed by maintain()
+    private final AtomicReference<Segment> _retired = new AtomicReference<Segment>();
+
+    // Written by the recording thread only
+    private volatile long _records = 0;
+    private volatile long _dropped = 0;
+
+    // Handshake with close(), so a segment is never unmapped while a record is copied into it
+    private volatile boolean _writing = false;
+    private volatile boolean _closed = false;
+    private volatile boolean _dirty = false;
+
+    // Guards maintain() and close(), never taken by record()
+    private final Object _maintenanceLock = new Object();
+    private int _sequence = 0;
+
+    /**
+     * Maps the first segment, so the first record does not wait for it.
+     * @param directory Where segments are created, made if missing
+     * @param segmentSize Maximum bytes per segment, the mapping size
+     * @param rotateIntervalMs Maximum age of a segment in milliseconds, 0 = rotate by size only
+     */
+    public NMEARecorder(File directory, int segmentSize, long rotateIntervalMs) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        _directory = directory;
+        _segmentSize = Math.max(segmentSize, HEADER_SIZE + RECORD_OVERHEAD + 128);
+        _rotateIntervalMs = rotateIntervalMs;
+        _next.set(openSegment());
+    }
+
+    /**
+     * Appends one sentence. Trailing CR/LF are not stored. If the segment is full and the next
+     * one is not mapped yet the sentence is dropped rather than waiting for it.
+     * @param timestamp onNmeaMessage timestamp, also drives time based rotation
+     * @return false if the sentence could not be recorded, see {@link #dropped()}
+     */
+    public boolean record(String sentence, long timestamp) {
+        int length = sentence.length();
+        while (length > 0 && (sentence.charAt(length - 1) == '\n' || sentence.charAt(length - 1) == '\r')) {
+            length--;
+        }
+        _writing = true;
+        try {
+            if (_closed || length == 0 || length > MAX_SENTENCE) {
+                _dropped++;
+                return false;
+            }
+            Segment segment = _current;
+            if (segment == null
+                    || segment.buffer.remaining() < RECORD_OVERHEAD + length
+                    || (_rotateIntervalMs > 0 && timestamp - segment.opened >= _rotateIntervalMs)) {
+                final Segment next = _next.getAndSet(null);
+                if (next != null) {
+                    next.opened = timestamp;
+                    _current = next;
+                    if (segment != null) {
+                        _retired.set(segment);
+                    }
+                    segment = next;
+                }
+                else if (segment == null || segment.buffer.remaining() < RECORD_OVERHEAD + length) {
+                    _dropped++;
+                    return false;
+                }
+            }
+            final MappedByteBuffer out = segment.buffer;
+            out.putLong(timestamp);
+            out.putShort((short) length);
+            for (int i = 0; i < length; i++) {
+                out.put((byte) sentence.charAt(i));
+            }
+            _records++;
+            _dirty = true;
+            return true;
+        }
+        finally {
+            _writing = false;
+        }
+    }
+
+    /**
+     * @return true if {@link #maintain()} has a segment to close or the next one to map
+     */
+    public boolean needsMaintenance() {
+        return !_closed && (_retired.get() != null || _next.get() == null);
+    }
+
+    /**
+     * Forces, truncates and closes the segment the recording thread rotated away from, then
+     * maps the next one. Call it regularly from a thread other than the recording thread.
+     * @throws IOException if the next segment could not be created, records are dropped once
+     * the current one is full
+     */
+    public void maintain() throws IOException {
+        synchronized (_maintenanceLock) {
+            final Segment retired = _retired.getAndSet(null);
+            if (retired != null) {
+                retired.close(true);
+            }
+            // Only this thread fills the slot and the recording thread only empties it
+            if (!_closed && _next.get() == null) {
+                _next.set(openSegment());
+            }
+        }
+    }
+
+    /**
+     * Flushes the current segment to storage. Safe to call from any thread while records are
+     * appended, it takes no lock.
+     */
+    public void sync() {
+        final Segment segment = _current;
+        if (segment == null || !_dirty) {
+            return;
+        }
+        _dirty = false;
+        try {
+            // Mapped pages live in the page cache of the file, fsync of the channel covers them
+            segment.channel.force(false);
+        }
+        catch (IOException exc) {
+            // Segment was closed meanwhile, closing forced it already
+            _dirty = true;
+        }
+    }
+
+    /**
+     * Flushes, truncates and closes the current segment and deletes the unused next one. Later
+     * records are dropped. Waits for at most the one record being copied, the recording thread
+     * never waits for close.
+     */
+    public void close() throws IOException {
+        synchronized (_maintenanceLock) {
+            _closed = true;
+            while (_writing) {
+                Thread.yield();
+            }
+            IOException error = null;
+            final Segment[] segments = {_retired.getAndSet(null), _current, _next.getAndSet(null)};
+            for (int i = 0; i < segments.length; i++) {
+                if (segments[i] == null) {
+                    continue;
+                }
+                try {
+                    segments[i].close(i < 2);
+                }
+                catch (IOException exc) {
+                    error = exc;
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    public boolean isClosed() {
+        return _closed;
+    }
+
+    public File currentSegment() {
+        final Segment segment = _current;
+        return segment != null ? segment.file : null;
+    }
+
+    public long records() {
+        return _records;
+    }
+
+    public long dropped() {
+        return _dropped;
+    }
+
+    public File getDirectory() {
+        return _directory;
+    }
+
+    /**
+     * @return segment files in the directory, oldest first
+     */
+    public static File[] listSegments(File directory) {
+        final File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().endsWith(SUFFIX);
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+        return files;
+    }
+
+    private Segment openSegment() throws IOException {
+        // Zero padded so names sort by creation time
+        final File file = uniqueSegment(String.format(Locale.US, "nmea-%016d-%06d", System.currentTimeMillis(), _sequence++));
+        final RandomAccessFile access = new RandomAccessFile(file, "rw");
+        try {
+            final FileChannel channel = access.getChannel();
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, _segmentSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.put(MAGIC);
+            return new Segment(file, access, channel, buffer);
+        }
+        catch (IOException exc) {
+            access.close();
+            throw exc;
+        }
+    }
+
+    private File uniqueSegment(String name) {
+        File segment = new File(_directory, name + SUFFIX);
+        for (int i = 1; segment.exists(); i++) {
+            segment = new File(_directory, name + "-" + i + SUFFIX);
+        }
+        return segment;
+    }
+
+    private static final class Segment {
+        final File file;
+        final RandomAccessFile access;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        long opened = 0; // timestamp of the first record, set by the recording thread
+
+        Segment(File file, RandomAccessFile access, FileChannel channel, MappedByteBuffer buffer) {
+            this.file = file;
+            this.access = access;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        /**
+         * @param keep false to delete a segment that never got a record
+         */
+        void close(boolean keep) throws IOException {
+            try {
+                if (keep) {
+                    final int length = buffer.position();
+                    buffer.force();
+                    channel.truncate(length);
+                }
+            }
+            finally {
+                access.close();
+                if (!keep && !file.delete()) {
+                    throw new IOException("Unable to delete " + file);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import com.esri.cordova.geolocation.model.NMEAOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Plays NMEA logs back into the same entry point the LocationManager listener uses, to reproduce
+ * field issues. Playback runs in real time, scaled by a speed factor, or as fast as possible.
+ * Logs without timestamps are paced by the UTC time of day their sentences carry.
+ *
+ * {@link #main(String[])} runs a log through the same NMEAEngine GPSController uses on a plain
+ * JVM and reports sentences/s and epochs/s, a deterministic throughput test that needs no device.
+ */
+public final class NMEAReplay implements Runnable {
+
+    /**
+     * Mirrors OnNmeaMessageListener.
+     */
+    public interface Sink {
+        void onNmeaMessage(String message, long timestamp);
+    }
+
+    public static final double FAST = 0;
+
+    private static final long NANOS_PER_MS = 1000000L;
+    private static final long MIN_SLEEP_NANOS = NANOS_PER_MS; // run sentences closer than this back to back
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private final File[] _files;
+    private final double _speed;
+    private final Sink _sink;
+    private volatile boolean _stopped = false;
+
+    private long _sentences = 0;
+    private long _elapsedNanos = 0;
+    private IOException _error = null;
+
+    // Pacing of logs without timestamps
+    private final NMEASentence _parsed = new NMEASentence();
+    private NMEAParserRegistry _registry = null;
+    private long _sentenceTime = NO_TIME;
+    private long _day = 0;
+
+    /**
+     * @param files Logs played in order, see {@link NMEALogReader} for the formats
+     * @param speed 1 = real time, 10 = ten times faster, {@link #FAST} or below = no pacing
+     */
+    public NMEAReplay(File[] files, double speed, Sink sink) {
+        _files = files.clone();
+        _speed = speed;
+        _sink = sink;
+    }
+
+    /**
+     * Plays all files on the calling thread until the end or {@link #stop()}.
+     */
+    @Override
+    public void run() {
+        final long started = System.nanoTime();
+        long firstTime = NO_TIME;
+        try {
+            for (int f = 0; f < _files.length && !_stopped; f++) {
+                final NMEALogReader reader = new NMEALogReader(_files[f]);
+                try {
+                    while (!_stopped && reader.next()) {
+                        final long timestamp = reader.timestamp();
+                        if (_speed > FAST) {
+                            final long time = reader.isTimed() ? timestamp : sentenceTime(reader.sentence());
+                            if (time != NO_TIME) {
+                                if (firstTime == NO_TIME) {
+                                    firstTime = time;
+                                }
+                                pace(started, (long) ((time - firstTime) * NANOS_PER_MS / _speed));
+                            }
+                        }
+                        _sink.onNmeaMessage(reader.sentence(), timestamp);
+                        _sentences++;
+                    }
+                }
+                finally {
+                    reader.close();
+                }
+            }
+        }
+        catch (IOException exc) {
+            _error = exc;
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+        _elapsedNanos = System.nanoTime() - started;
+    }
+
+    /**
+     * Ends playback after the current sentence. Interrupt the playing thread to cut a wait short.
+     */
+    public void stop() {
+        _stopped = true;
+    }
+
+    public long sentences() {
+        return _sentences;
+    }
+
+    public long elapsedNanos() {
+        return _elapsedNanos;
+    }
+
+    /**
+     * @return the read error that ended playback, or null
+     */
+    public IOException getError() {
+        return _error;
+    }
+
+    /**
+     * @return the UTC time of day of the sentence, continued across midnight, or of the last
+     * sentence with a time, NO_TIME before the first one
+     */
+    private long sentenceTime(String sentence) {
+        if (_registry == null) {
+            _registry = NMEAParserRegistry.createDefault();
+        }
+        if (!_parsed.reset(sentence)) {
+            return _sentenceTime;
+        }
+        final NMEAParserRegistry.Entry entry = _registry.lookup(_parsed);
+        final int timeOfDay = entry != null && entry.timeField >= 0 ? _parsed.parseTimeOfDay(entry.timeField) : -1;
+        if (timeOfDay < 0) {
+            return _sentenceTime;
+        }
+        if (_sentenceTime != NO_TIME && _day + timeOfDay < _sentenceTime - UTCClock.DAY_MS / 2) {
+            _day += UTCClock.DAY_MS;
+        }
+        _sentenceTime = _day + timeOfDay;
+        return _sentenceTime;
+    }
+
+    private static void pace(long started, long offsetNanos) throws InterruptedException {
+        final long wait = started + offsetNanos - System.nanoTime();
+        if (wait >= MIN_SLEEP_NANOS) {
+            Thread.sleep(wait / NANOS_PER_MS, (int) (wait % NANOS_PER_MS));
+        }
+    }
+
+    /**
+     * Usage: <code>NMEAReplay [--speed n] [--repeat n] [--buffer n] [--weighted] [--kalman]
+     * [--batch n] [--binary] [--skyview] file...</code>
+     * Without --speed the logs play as fast as possible. --repeat plays the corpus n times, the
+     * first run warms up the JIT and is not reported. The other options match the plugin's
+     * bufferSize and nmeaOptions.
+     */
+    public static void main(String[] args) throws IOException {
+        double speed = FAST;
+        int repeat = 1;
+        int bufferSize = 0;
+        final NMEAOptions options = new NMEAOptions();
+        final ArrayList<File> files = new ArrayList<File>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--speed") && i + 1 < args.length) {
+                speed = Double.parseDouble(args[++i]);
+            }
+            else if (args[i].equals("--repeat") && i + 1 < args.length) {
+                repeat = Math.max(1, Integer.parseInt(args[++i]));
+            }
+            else if (args[i].equals("--buffer") && i + 1 < args.length) {
+                bufferSize = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--weighted")) {
+                options.averaging = NMEAOptions.AVERAGING_WEIGHTED;
+            }
+            else if (args[i].equals("--kalman")) {
+                options.kalman = true;
+            }
+            else if (args[i].equals("--batch") && i + 1 < args.length) {
+                options.batchSize = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--binary")) {
+                options.binary = true;
+            }
+            else if (args[i].equals("--skyview")) {
+                options.skyView = true;
+            }
+            else {
+                files.add(new File(args[i]));
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: NMEAReplay [--speed n] [--repeat n] [--buffer n] [--weighted] [--kalman]"
+                    + " [--batch n] [--binary] [--skyview] file...");
+            System.exit(2);
+        }
+
+        final File[] corpus = files.toArray(new File[files.size()]);
+        for (int run = 1; run <= repeat; run++) {
+            final EngineCounter counter = new EngineCounter(options, bufferSize);
+            final NMEAReplay replay = new NMEAReplay(corpus, speed, counter);
+            replay.run();
+            counter.engine.finish();
+            if (replay.getError() != null) {
+                throw replay.getError();
+            }
+            if (repeat > 1 && run == 1) {
+                continue;
+            }
+            final double seconds = replay.elapsedNanos() / 1e9;
+            final long epochs = counter.engine.getStats().epochs();
+            System.out.println(String.format(Locale.US,
+                    "run %d: %d sentences, %d epochs, %d payloads, %d bytes in %.3f s: %.0f sentences/s, %.0f epochs/s",
+                    run, replay.sentences(), epochs, counter.payloads, counter.bytes, seconds,
+                    replay.sentences() / seconds, epochs / seconds));
+        }
+    }
+
+    /**
+     * Counts the payloads NMEAEngine produces. Delayed tasks are not run, batches are sent when
+     * full and by the final finish().
+     */
+    private static final class EngineCounter implements Sink, NMEAEngine.Transport, NMEAEngine.Scheduler {
+        final NMEAEngine engine;
+        long payloads = 0;
+        long bytes = 0;
+
+        EngineCounter(NMEAOptions options, int bufferSize) {
+            engine = new NMEAEngine(options, bufferSize, this, this);
+        }
+
+        @Override
+        public void onNmeaMessage(String message, long timestamp) {
+            engine.process(message, timestamp);
+            if (engine.getLocation().parseError()) {
+                engine.getLocation().getError();
+            }
+        }
+
+        @Override
+        public void send(String json) {
+            bytes += json.length();
+            payloads++;
+        }
+
+        @Override
+        public void send(byte[] data) {
+            bytes += data.length;
+            payloads++;
+        }
+
+        @Override
+        public void post(Runnable task, long delayMs) {
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+        }
+
+        @Override
+        public long uptimeMillis() {
+            return System.nanoTime() / NANOS_PER_MS;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer ring of NMEA messages and their timestamps.
+ * The listener thread offers in O(1) without allocating, the parser thread drains. When the
+ * ring is full the new message is dropped and counted, the producer never blocks.
+ * Exactly one thread may call {@link #offer} and exactly one other thread may call {@link #drain}.
+ */
+public final class NMEARingBuffer {
+
+    public interface Consumer {
+        void accept(String message, long timestamp);
+    }
+
+    private final String[] _messages;
+    private final long[] _timestamps;
+    private final int _mask;
+
+    private final AtomicLong _head = new AtomicLong(); // next slot to read, written by the consumer
+    private final AtomicLong _tail = new AtomicLong(); // next slot to write, written by the producer
+    private long _headCache = 0; // producer's last view of _head
+
+    // Written by the producer only, readable from any thread
+    private volatile long _offered = 0;
+    private volatile long _overflows = 0;
+    private volatile int _highWater = 0;
+
+    /**
+     * @param capacity Number of messages the ring holds, rounded up to a power of two
+     */
+    public NMEARingBuffer(int capacity) {
+        int size = 2;
+        while (size < capacity && size < (1 << 30)) {
+            size <<= 1;
+        }
+        _messages = new String[size];
+        _timestamps = new long[size];
+        _mask = size - 1;
+    }
+
+    /**
+     * Producer side.
+     * @return false if the ring was full and the message was dropped
+     */
+    public boolean offer(String message, long timestamp) {
+        final long tail = _tail.get();
+        _offered++;
+        if (tail - _headCache >= _messages.length) {
+            _headCache = _head.get();
+            if (tail - _headCache >= _messages.length) {
+                _overflows++;
+                return false;
+            }
+        }
+        final int index = (int) tail & _mask;
+        _messages[index] = message;
+        _timestamps[index] = timestamp;
+        _tail.lazySet(tail + 1);
+
+        final int depth = (int) (tail + 1 - _headCache);
+        if (depth > _highWater) {
+            _highWater = depth;
+        }
+        return true;
+    }
+
+    /**
+     * Consumer side. Hands up to limit messages to the consumer in arrival order.
+     * @return number of messages drained
+     */
+    public int drain(Consumer consumer, int limit) {
+        long head = _head.get();
+        final long available = _tail.get() - head;
+        final int count = (int) Math.min(available, limit);
+        for (int i = 0; i < count; i++) {
+            final int index = (int) head & _mask;
+            final String message = _messages[index];
+            final long timestamp = _timestamps[index];
+            _messages[index] = null;
+            // Publish the free slot before the consumer runs, a slow parse must not block the producer
+            _head.lazySet(++head);
+            consumer.accept(message, timestamp);
+        }
+        return count;
+    }
+
+    public int capacity() {
+        return _messages.length;
+    }
+
+    /**
+     * @return messages waiting to be drained, approximate while the producer is running
+     */
+    public int size() {
+        return (int) (_tail.get() - _head.get());
+    }
+
+    public long offered() {
+        return _offered;
+    }
+
+    /**
+     * @return messages dropped because the ring was full
+     */
+    public long overflows() {
+        return _overflows;
+    }
+
+    /**
+     * @return the deepest the ring has been filled so far
+     */
+    public int highWater() {
+        return _highWater;
+    }
+}
@@ -0,0 +1,307 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+/**
+ * Single pass cursor over a raw NMEA sentence. Field boundaries are recorded as offsets into the
+ * original CharSequence so numbers can be read in place without String.split() or substring().
+ * Field 0 is the address field, e.g. "GPGGA" (the leading '$' is not part of it). The checksum
+ * and any trailing line terminator are excluded from the last field.
+ * Instances are reusable and are not threadsafe.
+ */
+public final class NMEASentence {
+
+    public static final int MAX_FIELDS = 64;
+
+    private final int[] _start = new int[MAX_FIELDS];
+    private final int[] _end = new int[MAX_FIELDS];
+    private CharSequence _text;
+    private int _count = 0;
+
+    /**
+     * Points the cursor at a new sentence and records all field offsets.
+     * @param text The raw sentence as delivered by the location service
+     * @return false if the text does not look like an NMEA sentence
+     */
+    public boolean reset(CharSequence text) {
+        _text = text;
+        _count = 0;
+
+        if (text == null) {
+            return false;
+        }
+
+        final int length = text.length();
+        int pos = 0;
+        while (pos < length && text.charAt(pos) != '$' && text.charAt(pos) != '!') {
+            pos++;
+        }
+        if (pos == length) {
+            return false;
+        }
+
+        int fieldStart = ++pos;
+        for (; pos < length; pos++) {
+            final char c = text.charAt(pos);
+            if (c == ',') {
+                if (!addField(fieldStart, pos)) {
+                    return false;
+                }
+                fieldStart = pos + 1;
+            }
+            else if (c == '*' || c == '\r' || c == '\n') {
+                break;
+            }
+        }
+
+        return addField(fieldStart, pos) && _end[0] > _start[0];
+    }
+
+    private boolean addField(int start, int end) {
+        if (_count == MAX_FIELDS) {
+            return false;
+        }
+        _start[_count] = start;
+        _end[_count] = end;
+        _count++;
+        return true;
+    }
+
+    public CharSequence text() {
+        return _text;
+    }
+
+    public int fieldCount() {
+        return _count;
+    }
+
+    public int start(int field) {
+        return _start[field];
+    }
+
+    public int end(int field) {
+        return _end[field];
+    }
+
+    public int length(int field) {
+        return field < _count ? _end[field] - _start[field] : 0;
+    }
+
+    /**
+     * @return true if the field is blank or is not present in this sentence
+     */
+    public boolean isEmpty(int field) {
+        return field >= _count || _end[field] == _start[field];
+    }
+
+    public char charAt(int field, int offset) {
+        return _text.charAt(_start[field] + offset);
+    }
+
+    /**
+     * @return true if the address field is a two letter talker ID, e.g. GP, GN, GL, GA, GB or BD,
+     * followed by a three letter sentence type. Proprietary sentences start with 'P'.
+     */
+    public boolean isTalkerSentence() {
+        return _count > 0 && length(0) == 5 && _text.charAt(_start[0]) != 'P';
+    }
+
+    /**
+     * Compares the three letter sentence type, e.g. "GGA", without allocating.
+     */
+    public boolean isType(String type) {
+        if (!isTalkerSentence()) {
+            return false;
+        }
+        final int s = _start[0] + 2;
+        return _text.charAt(s) == type.charAt(0)
+                && _text.charAt(s + 1) == type.charAt(1)
+                && _text.charAt(s + 2) == type.charAt(2);
+    }
+
+    /**
+     * @return offset of the first occurrence of c within the field, or -1
+     */
+    public int indexOf(int field, char c) {
+        final int s = _start[field];
+        final int e = _end[field];
+        for (int i = s; i < e; i++) {
+            if (_text.charAt(i) == c) {
+                return i - s;
+            }
+        }
+        return -1;
+    }
+
+    public boolean fieldEquals(int field, char c) {
+        return length(field) == 1 && _text.charAt(_start[field]) == c;
+    }
+
+    /**
+     * Compares the contents of a field with a previously copied value.
+     */
+    public boolean fieldEquals(int field, char[] value, int valueLength) {
+        if (length(field) != valueLength) {
+            return false;
+        }
+        final int s = _start[field];
+        for (int i = 0; i < valueLength; i++) {
+            if (_text.charAt(s + i) != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies a field into a caller owned buffer.
+     * @return the number of chars copied
+     */
+    public int copyField(int field, char[] dest) {
+        final int len = Math.min(length(field), dest.length);
+        final int s = _start[field];
+        for (int i = 0; i < len; i++) {
+            dest[i] = _text.charAt(s + i);
+        }
+        return len;
+    }
+
+    public int parseInt(int field) {
+        return parseInt(field, 0, length(field));
+    }
+
+    /**
+     * Parses an unsigned or signed integer from part of a field.
+     * @param field Field index
+     * @param from Offset within the field, inclusive
+     * @param to Offset within the field, exclusive
+     * @throws NumberFormatException if the range is empty or contains anything but digits
+     */
+    public int parseInt(int field, int from, int to) {
+        checkField(field);
+        int pos = _start[field] + from;
+        final int end = _start[field] + to;
+        boolean negative = false;
+        if (pos < end && (_text.charAt(pos) == '-' || _text.charAt(pos) == '+')) {
+            negative = _text.charAt(pos) == '-';
+            pos++;
+        }
+        if (pos >= end) {
+            throw new NumberFormatException("Empty number in field " + field);
+        }
+        int value = 0;
+        for (; pos < end; pos++) {
+            final int d = _text.charAt(pos) - '0';
+            if (d < 0 || d > 9) {
+                throw new NumberFormatException("Invalid digit in field " + field);
+            }
+            value = value * 10 + d;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a UTC field "hhmmss" or "hhmmss.sss" as milliseconds since midnight. Digits beyond
+     * milliseconds are ignored.
+     * @return Time of day in milliseconds, -1 if the field is missing, empty or not a valid time
+     */
+    public int parseTimeOfDay(int field) {
+        if (field >= _count) {
+            return -1;
+        }
+        final int start = _start[field];
+        final int end = _end[field];
+        if (end - start < 6) {
+            return -1;
+        }
+        int hhmmss = 0;
+        for (int pos = start; pos < start + 6; pos++) {
+            final int d = _text.charAt(pos) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            hhmmss = hhmmss * 10 + d;
+        }
+        final int h = hhmmss / 10000;
+        final int m = hhmmss / 100 % 100;
+        final int sec = hhmmss % 100;
+        if (h > 23 || m > 59 || sec > 60) {
+            return -1;
+        }
+        int millis = 0;
+        if (end > start + 6) {
+            if (_text.charAt(start + 6) != '.') {
+                return -1;
+            }
+            int scale = 100;
+            for (int pos = start + 7; pos < end; pos++) {
+                final int d = _text.charAt(pos) - '0';
+                if (d < 0 || d > 9) {
+                    return -1;
+                }
+                millis += d * scale;
+                scale /= 10;
+            }
+        }
+        return ((h * 60 + m) * 60 + sec) * 1000 + millis;
+    }
+
+    public double parseDecimal(int field) {
+        return parseDecimal(field, 0);
+    }
+
+    /**
+     * Parses a plain decimal number, e.g. "-12.345", from a field starting at an offset.
+     * @throws NumberFormatException if the field is empty or malformed
+     */
+    public double parseDecimal(int field, int from) {
+        checkField(field);
+        return FixedPointParser.parseDouble(_text, _start[field] + from, _end[field]);
+    }
+
+    /**
+     * Parses a decimal field as a long scaled by 10^decimals, e.g. metres to millimetres.
+     * @throws NumberFormatException if the field is empty or malformed
+     */
+    public long parseScaled(int field, int decimals) {
+        checkField(field);
+        return FixedPointParser.parseScaled(_text, _start[field], _end[field], decimals);
+    }
+
+    /**
+     * Parses a ddmm.mmmm (degreeDigits 2) or dddmm.mmmm (degreeDigits 3) field as degrees.
+     * @throws NumberFormatException if the field is empty or malformed
+     */
+    public double parseCoordinate(int field, int degreeDigits) {
+        checkField(field);
+        return FixedPointParser.parseCoordinate(_text, _start[field], _end[field], degreeDigits);
+    }
+
+    /**
+     * Same as {@link #parseCoordinate(int, int)} but scaled by {@link FixedPointParser#NANO_DEGREES}.
+     */
+    public long parseCoordinateNanoDegrees(int field, int degreeDigits) {
+        checkField(field);
+        return FixedPointParser.parseCoordinateNanoDegrees(_text, _start[field], _end[field], degreeDigits);
+    }
+
+    private void checkField(int field) {
+        if (field >= _count) {
+            throw new NumberFormatException("Missing field " + field);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histograms for each stage of the NMEA engine. Stages record from their
+ * own threads without locks, {@link #write} may be called from any thread and reports rates
+ * over the time since its previous call with the same {@link RateWindow}, so readers with
+ * different cadences do not reset each other's rates.
+ */
+public final class PipelineStats {
+
+    private static final int OTHER = NMEAParserRegistry.MAX_ENTRIES; // sentences without a parser
+    private static final double NANOS_PER_MS = 1e6;
+    private static final int LATENCY_DECIMALS = 3;
+    private static final int RATE_DECIMALS = 1;
+
+    private final NMEAParserRegistry _parsers;
+    private final AtomicLongArray _sentences = new AtomicLongArray(OTHER + 1);
+    private final AtomicLongArray _errors = new AtomicLongArray(OTHER + 1);
+    private final AtomicLong _invalid = new AtomicLong();
+    private final AtomicLong _late = new AtomicLong();
+    private final AtomicLong _early = new AtomicLong();
+    private final AtomicLong _expired = new AtomicLong();
+    private final AtomicLong _epochs = new AtomicLong();
+    private final AtomicLong _payloads = new AtomicLong();
+    private final AtomicLong _bytes = new AtomicLong();
+
+    /** First sentence of an epoch to its hand-off to delivery, nanoseconds */
+    public final LogHistogram assembly = new LogHistogram();
+    /** JSON or binary encoding of an epoch or batch, nanoseconds */
+    public final LogHistogram serialization = new LogHistogram();
+    /** Hand-off of a payload to the transport, nanoseconds */
+    public final LogHistogram send = new LogHistogram();
+    /** Time between an epoch emitted on its complete sentence set and the start of the next, nanoseconds */
+    public final LogHistogram saved = new LogHistogram();
+    /** Messages waiting for the parser, sampled by the owner of the queue */
+    public final LogHistogram backlog = new LogHistogram();
+
+    private final long _started = System.nanoTime();
+
+    /**
+     * Counts at a reader's previous {@link #write}, the baseline of its rates. Guarded by the
+     * PipelineStats it was created by.
+     */
+    public static final class RateWindow {
+        private long _lastWrite;
+        private final long[] _lastSentences = new long[OTHER + 1];
+        private long _lastEpochs = 0;
+
+        private RateWindow(long started) {
+            _lastWrite = started;
+        }
+    }
+
+    public PipelineStats(NMEAParserRegistry parsers) {
+        _parsers = parsers;
+    }
+
+    /**
+     * @return a rate baseline starting when the stats were created
+     */
+    public RateWindow newWindow() {
+        return new RateWindow(_started);
+    }
+
+    /**
+     * @param entry Parser entry of the sentence, null if no parser is registered for it
+     */
+    public void sentence(NMEAParserRegistry.Entry entry) {
+        _sentences.incrementAndGet(entry != null ? entry.index : OTHER);
+    }
+
+    public void error(NMEAParserRegistry.Entry entry) {
+        _errors.incrementAndGet(entry != null ? entry.index : OTHER);
+    }
+
+    /**
+     * Counts a message that is not an NMEA sentence.
+     */
+    public void invalid() {
+        _invalid.incrementAndGet();
+    }
+
+    /**
+     * Counts a sentence dropped because its epoch was already emitted.
+     */
+    public void late() {
+        _late.incrementAndGet();
+    }
+
+    /**
+     * Counts an epoch emitted as soon as its expected sentence set was complete.
+     */
+    public void earlyEpoch() {
+        _early.incrementAndGet();
+    }
+
+    /**
+     * Counts an epoch emitted by the timeout with an incomplete sentence set.
+     */
+    public void expiredEpoch() {
+        _expired.incrementAndGet();
+    }
+
+    public void epoch() {
+        _epochs.incrementAndGet();
+    }
+
+    public void payload(int bytes) {
+        _payloads.incrementAndGet();
+        _bytes.addAndGet(bytes);
+    }
+
+    public long sentences() {
+        long total = 0;
+        for (int i = 0; i <= OTHER; i++) {
+            total += _sentences.get(i);
+        }
+        return total;
+    }
+
+    public long epochs() {
+        return _epochs.get();
+    }
+
+    /**
+     * Writes the members of the stats object, the caller opens and closes it. Latencies are in
+     * milliseconds, rates per second since the previous call with the same window.
+     * @param window Rate baseline of the caller, advanced to now
+     */
+    public synchronized JSONWriter write(JSONWriter writer, RateWindow window) {
+        final long now = System.nanoTime();
+        final double seconds = Math.max(now - window._lastWrite, 1) / 1e9;
+        window._lastWrite = now;
+
+        writer.name("uptimeMs", (now - _started) / 1000000L)
+                .name("intervalMs", (long) (seconds * 1000));
+
+        long total = 0;
+        long totalDelta = 0;
+        writer.name("types").beginObject();
+        for (int i = 0; i <= OTHER; i++) {
+            final long count = _sentences.get(i);
+            final long errors = _errors.get(i);
+            if (count == 0 && errors == 0) {
+                continue;
+            }
+            final long delta = count - window._lastSentences[i];
+            window._lastSentences[i] = count;
+            total += count;
+            totalDelta += delta;
+            writer.name(i == OTHER ? "other" : _parsers.entry(i).address).beginObject()
+                    .name("count", count)
+                    .name("rate", delta / seconds, RATE_DECIMALS)
+                    .name("errors", errors)
+                    .endObject();
+        }
+        writer.endObject();
+
+        final long epochs = _epochs.get();
+        writer.name("sentences", total)
+                .name("sentenceRate", totalDelta / seconds, RATE_DECIMALS)
+                .name("invalid", _invalid.get())
+                .name("late", _late.get())
+                .name("epochs", epochs)
+                .name("epochRate", (epochs - window._lastEpochs) / seconds, RATE_DECIMALS)
+                .name("earlyEpochs", _early.get())
+                .name("expiredEpochs", _expired.get())
+                .name("payloads", _payloads.get())
+                .name("bytes", _bytes.get());
+        window._lastEpochs = epochs;
+
+        assembly.write(writer.name("assembly"), NANOS_PER_MS, LATENCY_DECIMALS);
+        serialization.write(writer.name("serialization"), NANOS_PER_MS, LATENCY_DECIMALS);
+        send.write(writer.name("send"), NANOS_PER_MS, LATENCY_DECIMALS);
+        saved.write(writer.name("saved"), NANOS_PER_MS, LATENCY_DECIMALS);
+        backlog.write(writer.name("backlog"), 1, 0);
+        return writer;
+    }
+}
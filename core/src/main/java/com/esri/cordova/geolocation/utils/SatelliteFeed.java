@@ -0,0 +1,196 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import java.util.Arrays;
+
+/**
+ * Collects the satellites of one GNSS status update into column arrays and serializes them as
+ * one JSON array per attribute, so no object or key string is repeated per satellite. The
+ * arrays and the JSON buffer are reused for every update. Updates are rate limited to one per
+ * interval. Not threadsafe.
+ */
+public final class SatelliteFeed {
+
+    public static final String PROVIDER = "satellite";
+    public static final long DEFAULT_INTERVAL_MS = 1000;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int DECIMALS = 1; // cn0 and angles, the receivers report no better
+    private static final long NEVER = Long.MIN_VALUE;
+
+    // Constellations by GnssStatus.CONSTELLATION_* value, unknown ones map to NONE
+    private static final int[] ANDROID_CONSTELLATIONS = {
+            Constellations.NONE,
+            Constellations.GPS,
+            Constellations.SBAS,
+            Constellations.GLONASS,
+            Constellations.QZSS,
+            Constellations.BEIDOU,
+            Constellations.GALILEO,
+            Constellations.IRNSS
+    };
+
+    private final long _intervalMs;
+    private final JSONWriter _writer = new JSONWriter();
+
+    private int[] _svid = new int[INITIAL_CAPACITY];
+    private int[] _constellation = new int[INITIAL_CAPACITY];
+    private float[] _cn0 = new float[INITIAL_CAPACITY];
+    private float[] _elevation = new float[INITIAL_CAPACITY];
+    private float[] _azimuth = new float[INITIAL_CAPACITY];
+    private float[] _carrierFrequency = new float[INITIAL_CAPACITY]; // Hz, NaN if not reported
+    private int[] _used = new int[INITIAL_CAPACITY / 32]; // bit i % 32 of word i / 32
+    private int _count = 0;
+    private boolean _hasCarrierFrequency = false;
+
+    private long _timeToFirstFix = -1;
+    private long _lastSent = NEVER;
+
+    /**
+     * @param intervalMs Minimum time between two updates, 0 sends every update
+     */
+    public SatelliteFeed(long intervalMs) {
+        _intervalMs = intervalMs;
+    }
+
+    /**
+     * @param now Monotonic time in milliseconds
+     * @return true if the interval has passed since the last update was written
+     */
+    public boolean isDue(long now) {
+        return _lastSent == NEVER || now - _lastSent >= _intervalMs;
+    }
+
+    /**
+     * Starts a new update, dropping the satellites of the previous one.
+     */
+    public void begin() {
+        for (int i = 0; i < _used.length; i++) {
+            _used[i] = 0;
+        }
+        _count = 0;
+        _hasCarrierFrequency = false;
+    }
+
+    /**
+     * @param constellation A Constellations constant, see {@link #fromAndroid(int)}
+     * @param carrierFrequency Carrier frequency in Hz, NaN if not reported
+     */
+    public void add(int svid, int constellation, float cn0, float elevation, float azimuth,
+                    boolean usedInFix, float carrierFrequency) {
+        if (_count == _svid.length) {
+            grow();
+        }
+        final int i = _count++;
+        _svid[i] = svid;
+        _constellation[i] = constellation;
+        _cn0[i] = cn0;
+        _elevation[i] = elevation;
+        _azimuth[i] = azimuth;
+        _carrierFrequency[i] = carrierFrequency;
+        if (usedInFix) {
+            _used[i >>> 5] |= 1 << (i & 31);
+        }
+        _hasCarrierFrequency |= !Float.isNaN(carrierFrequency);
+    }
+
+    public int size() {
+        return _count;
+    }
+
+    /**
+     * @param timeToFirstFix Milliseconds from the start of the GNSS engine to its first fix
+     */
+    public void setTimeToFirstFix(long timeToFirstFix) {
+        _timeToFirstFix = timeToFirstFix;
+    }
+
+    /**
+     * Serializes the current update into the reused buffer.
+     * @param timestamp Wall clock time of the update
+     * @param now Monotonic time in milliseconds, starts the next interval
+     */
+    public String write(long timestamp, long now) {
+        _lastSent = now;
+        final JSONWriter json = _writer.reset().beginObject()
+                .name("provider", PROVIDER)
+                .name("timestamp", timestamp);
+        if (_timeToFirstFix >= 0) {
+            json.name("timeToFirstFix", _timeToFirstFix);
+        }
+        json.name("count", _count);
+        writeColumn(json, "svid", _svid);
+        writeColumn(json, "constellation", _constellation);
+        writeColumn(json, "cn0", _cn0);
+        writeColumn(json, "elevation", _elevation);
+        writeColumn(json, "azimuth", _azimuth);
+        json.name("usedInFix").beginArray();
+        for (int w = 0, words = (_count + 31) >>> 5; w < words; w++) {
+            json.value(_used[w]);
+        }
+        json.endArray();
+        if (_hasCarrierFrequency) {
+            json.name("carrierFrequency").beginArray();
+            for (int i = 0; i < _count; i++) {
+                json.value(_carrierFrequency[i], 0);
+            }
+            json.endArray();
+        }
+        return json.endObject().toString();
+    }
+
+    private void writeColumn(JSONWriter json, String name, int[] values) {
+        json.name(name).beginArray();
+        for (int i = 0; i < _count; i++) {
+            json.value(values[i]);
+        }
+        json.endArray();
+    }
+
+    private void writeColumn(JSONWriter json, String name, float[] values) {
+        json.name(name).beginArray();
+        for (int i = 0; i < _count; i++) {
+            json.value(values[i], DECIMALS);
+        }
+        json.endArray();
+    }
+
+    /**
+     * Devices with many constellations and dual frequency report more satellites than
+     * INITIAL_CAPACITY, allocates only until the largest update fits.
+     */
+    private void grow() {
+        final int capacity = _svid.length * 2;
+        _svid = Arrays.copyOf(_svid, capacity);
+        _constellation = Arrays.copyOf(_constellation, capacity);
+        _cn0 = Arrays.copyOf(_cn0, capacity);
+        _elevation = Arrays.copyOf(_elevation, capacity);
+        _azimuth = Arrays.copyOf(_azimuth, capacity);
+        _carrierFrequency = Arrays.copyOf(_carrierFrequency, capacity);
+        _used = Arrays.copyOf(_used, capacity / 32);
+    }
+
+    /**
+     * @param constellationType A GnssStatus.CONSTELLATION_* value
+     * @return the matching Constellations constant
+     */
+    public static int fromAndroid(int constellationType) {
+        return constellationType >= 0 && constellationType < ANDROID_CONSTELLATIONS.length
+                ? ANDROID_CONSTELLATIONS[constellationType] : Constellations.NONE;
+    }
+}
@@ -0,0 +1,391 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+/**
+ * Assembles multi-part GSV sentences into a table of satellites in view and serializes only
+ * what changed since the previous sky view. Satellites are keyed by constellation, signal and
+ * ID and held in primitive arrays sorted by key, so updates are a binary search and nothing is
+ * allocated per sentence.
+ *
+ * A GSV group is the sequence of sentences of one talker and signal. Only a complete group
+ * replaces its satellites; a group with a missing or repeated part is dropped. Satellites of
+ * groups the receiver did not report again are kept. Not threadsafe.
+ */
+public final class SkyView {
+
+    public static final String PROVIDER = "skyview";
+    public static final int MAX_SATELLITES = 128;
+    public static final int MISSING = Integer.MIN_VALUE; // value not reported, serialized as null
+
+    private static final int MAX_PER_GROUP = 99; // GSV counts satellites with two digits
+    private static final int NO_GROUP = -1;
+
+    // Talker IDs, GN and unknown talkers use the ID ranges of Constellations
+    private static final int TALKER_OTHER = 0;
+    private static final int TALKER_GP = 1;
+    private static final int TALKER_GL = 2;
+    private static final int TALKER_GA = 3;
+    private static final int TALKER_GB = 4;
+    private static final int TALKER_GQ = 5;
+    private static final int TALKER_GI = 6;
+
+    // Satellites in view, sorted by key
+    private final int[] _key = new int[MAX_SATELLITES];
+    private final int[] _group = new int[MAX_SATELLITES];
+    private final int[] _elevation = new int[MAX_SATELLITES];
+    private final int[] _azimuth = new int[MAX_SATELLITES];
+    private final int[] _snr = new int[MAX_SATELLITES];
+    private final boolean[] _changed = new boolean[MAX_SATELLITES];
+    private final boolean[] _seen = new boolean[MAX_SATELLITES];
+    private int _count = 0;
+
+    // Keys removed since the last sky view
+    private final int[] _removed = new int[MAX_SATELLITES];
+    private int _removedCount = 0;
+    private boolean _dirty = false;
+
+    // The group being received
+    private final int[] _inKey = new int[MAX_PER_GROUP];
+    private final int[] _inElevation = new int[MAX_PER_GROUP];
+    private final int[] _inAzimuth = new int[MAX_PER_GROUP];
+    private final int[] _inSnr = new int[MAX_PER_GROUP];
+    private int _inCount = 0;
+    private int _inGroup = NO_GROUP;
+    private int _inParts = 0;
+    private int _inNext = 0;
+
+    private int _sentences = 0;
+
+    /**
+     * Adds one GSV sentence.
+     * @throws NumberFormatException if a field holds something other than a number
+     */
+    public void add(NMEASentence mp) {
+        _sentences++;
+        if (mp.isEmpty(1) || mp.isEmpty(2)) {
+            return;
+        }
+        final int parts = mp.parseInt(1);
+        final int part = mp.parseInt(2);
+        final int count = mp.fieldCount();
+        // NMEA 4.10 appends the signal ID after the satellite blocks
+        final int signal = (count - 4) % 4 == 1 && !mp.isEmpty(count - 1)
+                ? Character.digit(mp.charAt(count - 1, 0), 16) & 0xF : 0;
+        final int talker = talker(mp);
+        final int group = talker << 4 | signal;
+
+        if (part == 1) {
+            _inGroup = group;
+            _inParts = parts;
+            _inNext = 1;
+            _inCount = 0;
+        }
+        else if (group != _inGroup || part != _inNext || parts != _inParts) {
+            _inGroup = NO_GROUP;
+            return;
+        }
+
+        for (int f = 4; f + 3 < count; f += 4) {
+            if (mp.isEmpty(f) || _inCount == MAX_PER_GROUP) {
+                continue;
+            }
+            final int id = mp.parseInt(f);
+            _inKey[_inCount] = key(constellation(talker, id), signal, id);
+            _inElevation[_inCount] = integer(mp, f + 1);
+            _inAzimuth[_inCount] = integer(mp, f + 2);
+            _inSnr[_inCount] = integer(mp, f + 3);
+            _inCount++;
+        }
+
+        _inNext++;
+        if (part == parts) {
+            commit(group);
+            _inGroup = NO_GROUP;
+        }
+    }
+
+    /**
+     * @return Number of GSV sentences added, lets the caller tell whether the last sentence was one
+     */
+    public int sentenceCount() {
+        return _sentences;
+    }
+
+    /**
+     * @return true if satellites changed since the last call to {@link #write}
+     */
+    public boolean isDirty() {
+        return _dirty;
+    }
+
+    /**
+     * @return true while a group is partly received
+     */
+    public boolean isReceiving() {
+        return _inGroup != NO_GROUP;
+    }
+
+    public int size() {
+        return _count;
+    }
+
+    /**
+     * Writes the satellites that changed as column arrays, then the keys of the ones that left
+     * the view, and starts the next diff.
+     * @param full true to write every satellite in view instead of the changes
+     */
+    public JSONWriter write(JSONWriter json, long timestamp, boolean full) {
+        json.beginObject()
+                .name("provider", PROVIDER)
+                .name("timestamp", timestamp)
+                .name("full", full)
+                .name("count", _count);
+
+        json.name("constellation").beginArray();
+        for (int i = 0; i < _count; i++) {
+            if (full || _changed[i]) {
+                json.value(keyConstellation(_key[i]));
+            }
+        }
+        json.endArray();
+        json.name("signal").beginArray();
+        for (int i = 0; i < _count; i++) {
+            if (full || _changed[i]) {
+                json.value(keySignal(_key[i]));
+            }
+        }
+        json.endArray();
+        json.name("prn").beginArray();
+        for (int i = 0; i < _count; i++) {
+            if (full || _changed[i]) {
+                json.value(keyId(_key[i]));
+            }
+        }
+        json.endArray();
+        writeColumn(json, "elevation", _elevation, full);
+        writeColumn(json, "azimuth", _azimuth, full);
+        writeColumn(json, "snr", _snr, full);
+
+        json.name("removed").beginObject();
+        json.name("constellation").beginArray();
+        for (int i = 0; i < _removedCount; i++) {
+            json.value(keyConstellation(_removed[i]));
+        }
+        json.endArray();
+        json.name("signal").beginArray();
+        for (int i = 0; i < _removedCount; i++) {
+            json.value(keySignal(_removed[i]));
+        }
+        json.endArray();
+        json.name("prn").beginArray();
+        for (int i = 0; i < _removedCount; i++) {
+            json.value(keyId(_removed[i]));
+        }
+        json.endArray();
+        json.endObject();
+        json.endObject();
+
+        for (int i = 0; i < _count; i++) {
+            _changed[i] = false;
+        }
+        _removedCount = 0;
+        _dirty = false;
+        return json;
+    }
+
+    private void writeColumn(JSONWriter json, String name, int[] values, boolean full) {
+        json.name(name).beginArray();
+        for (int i = 0; i < _count; i++) {
+            if (full || _changed[i]) {
+                if (values[i] == MISSING) {
+                    json.value((String) null);
+                }
+                else {
+                    json.value(values[i]);
+                }
+            }
+        }
+        json.endArray();
+    }
+
+    /**
+     * Forgets all satellites, e.g. when a different receiver or log starts.
+     */
+    public void clear() {
+        _count = 0;
+        _removedCount = 0;
+        _inGroup = NO_GROUP;
+        _dirty = false;
+    }
+
+    /**
+     * Replaces the satellites of a group with the ones just received.
+     */
+    private void commit(int group) {
+        for (int i = 0; i < _count; i++) {
+            _seen[i] = _group[i] != group;
+        }
+        for (int n = 0; n < _inCount; n++) {
+            final int key = _inKey[n];
+            int i = search(key);
+            if (i < 0) {
+                if (_count == MAX_SATELLITES) {
+                    continue;
+                }
+                i = -i - 1;
+                insert(i, key, group);
+                unremove(key);
+            }
+            else if (_elevation[i] == _inElevation[n] && _azimuth[i] == _inAzimuth[n]
+                    && _snr[i] == _inSnr[n] && _group[i] == group) {
+                _seen[i] = true;
+                continue;
+            }
+            _group[i] = group;
+            _elevation[i] = _inElevation[n];
+            _azimuth[i] = _inAzimuth[n];
+            _snr[i] = _inSnr[n];
+            _changed[i] = true;
+            _seen[i] = true;
+            _dirty = true;
+        }
+
+        // Drop the satellites the group no longer reports
+        int kept = 0;
+        for (int i = 0; i < _count; i++) {
+            if (!_seen[i]) {
+                if (_removedCount < MAX_SATELLITES) {
+                    _removed[_removedCount++] = _key[i];
+                }
+                _dirty = true;
+                continue;
+            }
+            if (kept != i) {
+                move(i, kept);
+            }
+            kept++;
+        }
+        _count = kept;
+    }
+
+    private int search(int key) {
+        int low = 0;
+        int high = _count - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (_key[mid] < key) {
+                low = mid + 1;
+            }
+            else if (_key[mid] > key) {
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void insert(int at, int key, int group) {
+        for (int i = _count; i > at; i--) {
+            move(i - 1, i);
+        }
+        _key[at] = key;
+        _group[at] = group;
+        _count++;
+    }
+
+    private void move(int from, int to) {
+        _key[to] = _key[from];
+        _group[to] = _group[from];
+        _elevation[to] = _elevation[from];
+        _azimuth[to] = _azimuth[from];
+        _snr[to] = _snr[from];
+        _changed[to] = _changed[from];
+        _seen[to] = _seen[from];
+    }
+
+    /**
+     * A satellite that left and came back before the sky view was sent is reported as changed only.
+     */
+    private void unremove(int key) {
+        for (int i = 0; i < _removedCount; i++) {
+            if (_removed[i] == key) {
+                _removed[i] = _removed[--_removedCount];
+                return;
+            }
+        }
+    }
+
+    private static int integer(NMEASentence mp, int field) {
+        if (mp.isEmpty(field)) {
+            return MISSING;
+        }
+        // Some receivers report fractional degrees
+        final int dot = mp.indexOf(field, '.');
+        return mp.parseInt(field, 0, dot < 0 ? mp.length(field) : dot);
+    }
+
+    private static int talker(NMEASentence mp) {
+        if (!mp.isTalkerSentence()) {
+            return TALKER_OTHER;
+        }
+        final char first = mp.charAt(0, 0);
+        final char second = mp.charAt(0, 1);
+        if (first == 'G') {
+            switch (second) {
+                case 'P': return TALKER_GP;
+                case 'L': return TALKER_GL;
+                case 'A': return TALKER_GA;
+                case 'B': return TALKER_GB;
+                case 'Q': return TALKER_GQ;
+                case 'I': return TALKER_GI;
+                default: return TALKER_OTHER;
+            }
+        }
+        return first == 'B' && second == 'D' ? TALKER_GB : TALKER_OTHER;
+    }
+
+    private static int constellation(int talker, int id) {
+        switch (talker) {
+            case TALKER_GL: return Constellations.GLONASS;
+            case TALKER_GA: return Constellations.GALILEO;
+            case TALKER_GB: return Constellations.BEIDOU;
+            case TALKER_GQ: return Constellations.QZSS;
+            case TALKER_GI: return Constellations.IRNSS;
+            default: return Constellations.of(id);
+        }
+    }
+
+    // Key layout: constellation + 1 in bits 16 and up, signal in bits 12 to 15, ID below
+    private static int key(int constellation, int signal, int id) {
+        return (constellation + 1) << 16 | signal << 12 | (id & 0xFFF);
+    }
+
+    private static int keyConstellation(int key) {
+        return (key >>> 16) - 1;
+    }
+
+    private static int keySignal(int key) {
+        return key >>> 12 & 0xF;
+    }
+
+    private static int keyId(int key) {
+        return key & 0xFFF;
+    }
+}
@@ -0,0 +1,291 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import com.esri.cordova.geolocation.model.NMEAEpoch;
+
+/**
+ * Weighted average of the last N positions for static survey points, with outlier rejection.
+ *
+ * Each position is weighted by 1 / sigma^2 times a factor for its GGA fix quality, so RTK fixed
+ * epochs dominate float and DGPS ones. Sigma is the GST, GBS or PUBX horizontal error if
+ * reported, otherwise HDOP times a nominal range error. The buffered accuracy is the weighted
+ * mean of the reported GST, GBS or PUBX errors in metres; GGA's unitless HDOP is not averaged. Before a position is averaged it is checked against the
+ * running median of the last MEDIAN_WINDOW positions, every epoch feeds that window whether it
+ * is kept or not. It is rejected if it is more than threshold * 1.4826 * MAD away from the median
+ * on either axis, so a real move is accepted once it holds the majority of the window.
+ *
+ * Positions are handled as nanodegree offsets from the first one, the weighted sums use
+ * compensated summation so the sliding window does not drift. O(window) per epoch, no
+ * allocation. Not threadsafe.
+ */
+public final class StaticAverager implements EpochFilter {
+
+    public static final int MEDIAN_WINDOW = 25;
+    private static final int MIN_MEDIAN_SAMPLES = 5; // no rejection before the window has this many
+    private static final double MAD_TO_SIGMA = 1.4826; // MAD of a normal distribution times this is sigma
+    private static final double RANGE_ERROR = 4.0; // metres per unit of HDOP if GST is not reported
+    private static final double DEFAULT_SIGMA = 10.0; // metres if neither GST nor HDOP is reported
+    private static final double MIN_SIGMA = 0.001;
+    private static final double METRES_PER_DEGREE = 111320.0;
+
+    private static final long HALF_TURN = 180 * FixedPointParser.NANO_DEGREES;
+    private static final long FULL_TURN = 360 * FixedPointParser.NANO_DEGREES;
+
+    private final double _threshold;
+    private final StreamingMedian _latitudeMedian = new StreamingMedian(MEDIAN_WINDOW);
+    private final StreamingMedian _longitudeMedian = new StreamingMedian(MEDIAN_WINDOW);
+
+    // Averaging window, kept positions only
+    private final long[] _latitudes;
+    private final long[] _longitudes;
+    private final double[] _weights;
+    private final double[] _accuracies; // NaN if not reported
+    private int _head = 0;
+    private int _size = 0;
+
+    private boolean _referenced = false;
+    private long _referenceLatitude;
+    private long _referenceLongitude;
+    private final Sum _weightSum = new Sum();
+    private final Sum _latitudeSum = new Sum();
+    private final Sum _longitudeSum = new Sum();
+    private final Sum _accuracySum = new Sum();
+    private final Sum _accuracyWeightSum = new Sum();
+
+    private long _kept = 0;
+    private long _rejected = 0;
+
+    /**
+     * @param capacity Maximum number of kept positions averaged, at least 1
+     * @param threshold Rejection limit in robust standard deviations, 0 disables rejection
+     */
+    public StaticAverager(int capacity, double threshold) {
+        final int size = Math.max(capacity, 1);
+        _latitudes = new long[size];
+        _longitudes = new long[size];
+        _weights = new double[size];
+        _accuracies = new double[size];
+        _threshold = threshold;
+    }
+
+    /**
+     * Weight of a GGA fix quality relative to an RTK fix.
+     */
+    static double qualityFactor(int quality) {
+        switch (quality) {
+            case 4: // RTK fix
+                return 1.0;
+            case 5: // RTK float
+                return 0.05;
+            case 2: // DGPS
+            case 3: // PPS
+                return 0.005;
+            case 0: // no fix
+                return 0;
+            default:
+                return 0.001;
+        }
+    }
+
+    /**
+     * Horizontal standard deviation in metres used to weight the epoch.
+     */
+    static double sigma(NMEAEpoch epoch) {
+        final double sigma;
+        if (epoch.has(NMEAEpoch.RTK_ACCURACY)) {
+            sigma = epoch.rtkAccuracy;
+        }
+        else if (epoch.has(NMEAEpoch.HDOP)) {
+            sigma = epoch.hdop * RANGE_ERROR;
+        }
+        else {
+            sigma = DEFAULT_SIGMA;
+        }
+        return Math.max(sigma, MIN_SIGMA);
+    }
+
+    @Override
+    public void apply(NMEAEpoch epoch) {
+        if (!epoch.has(NMEAEpoch.POSITION)) {
+            return;
+        }
+        final double sigma = sigma(epoch);
+        final double weight = qualityFactor(epoch.quality) / (sigma * sigma);
+        if (weight > 0) {
+            if (!_referenced) {
+                _referenceLatitude = epoch.latitudeNanoDegrees;
+                _referenceLongitude = epoch.longitudeNanoDegrees;
+                _referenced = true;
+            }
+            final long latitude = epoch.latitudeNanoDegrees - _referenceLatitude;
+            final long longitude = wrap(epoch.longitudeNanoDegrees - _referenceLongitude);
+
+            final boolean outlier = isOutlier(latitude, longitude, sigma, epoch.latitude);
+            _latitudeMedian.add(latitude);
+            _longitudeMedian.add(longitude);
+
+            if (outlier) {
+                _rejected++;
+                epoch.bufferOutlier = true;
+            }
+            else {
+                _kept++;
+                add(latitude, longitude, weight, epoch.has(NMEAEpoch.RTK_ACCURACY) ? epoch.rtkAccuracy : Double.NaN);
+            }
+        }
+        else {
+            // No fix, nothing to average
+            _rejected++;
+            epoch.bufferOutlier = true;
+        }
+
+        if (_size == 0) {
+            return;
+        }
+        epoch.set(NMEAEpoch.BUFFERED | NMEAEpoch.BUFFER_WEIGHTED);
+        epoch.bufferSize = _size;
+        epoch.bufferKept = _kept;
+        epoch.bufferRejected = _rejected;
+        final double weights = _weightSum.value();
+        epoch.bufferedLatitude = (_referenceLatitude + _latitudeSum.value() / weights) / FixedPointParser.NANO_DEGREES;
+        epoch.bufferedLongitude = unwrapDegrees(_referenceLongitude + _longitudeSum.value() / weights);
+        final double accuracyWeights = _accuracyWeightSum.value();
+        epoch.bufferedAccuracy = accuracyWeights > 0 ? _accuracySum.value() / accuracyWeights : Double.NaN;
+    }
+
+    public long kept() {
+        return _kept;
+    }
+
+    public long rejected() {
+        return _rejected;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    public void clear() {
+        _head = 0;
+        _size = 0;
+        _referenced = false;
+        _latitudeMedian.clear();
+        _longitudeMedian.clear();
+        _weightSum.clear();
+        _latitudeSum.clear();
+        _longitudeSum.clear();
+        _accuracySum.clear();
+        _accuracyWeightSum.clear();
+        _kept = 0;
+        _rejected = 0;
+    }
+
+    private boolean isOutlier(long latitude, long longitude, double sigma, double latitudeDegrees) {
+        if (_threshold <= 0 || _latitudeMedian.size() < MIN_MEDIAN_SAMPLES) {
+            return false;
+        }
+        // The epoch's own sigma is the floor, a receiver repeating the same position has a MAD of 0
+        final double floorLatitude = sigma / METRES_PER_DEGREE * FixedPointParser.NANO_DEGREES;
+        final double floorLongitude = floorLatitude / Math.max(Math.cos(Math.toRadians(latitudeDegrees)), 0.01);
+        final double limitLatitude = _threshold * Math.max(MAD_TO_SIGMA * _latitudeMedian.mad(), floorLatitude);
+        final double limitLongitude = _threshold * Math.max(MAD_TO_SIGMA * _longitudeMedian.mad(), floorLongitude);
+        return Math.abs(latitude - _latitudeMedian.median()) > limitLatitude
+                || Math.abs(longitude - _longitudeMedian.median()) > limitLongitude;
+    }
+
+    private void add(long latitude, long longitude, double weight, double accuracy) {
+        final int slot;
+        if (_size == _latitudes.length) {
+            slot = _head;
+            final double w = _weights[slot];
+            _weightSum.add(-w);
+            _latitudeSum.add(-w * _latitudes[slot]);
+            _longitudeSum.add(-w * _longitudes[slot]);
+            if (!Double.isNaN(_accuracies[slot])) {
+                _accuracySum.add(-w * _accuracies[slot]);
+                _accuracyWeightSum.add(-w);
+            }
+            _head = (_head + 1) % _latitudes.length;
+        }
+        else {
+            slot = (_head + _size) % _latitudes.length;
+            _size++;
+        }
+        _latitudes[slot] = latitude;
+        _longitudes[slot] = longitude;
+        _weights[slot] = weight;
+        _accuracies[slot] = accuracy;
+        _weightSum.add(weight);
+        _latitudeSum.add(weight * latitude);
+        _longitudeSum.add(weight * longitude);
+        if (!Double.isNaN(accuracy)) {
+            _accuracySum.add(weight * accuracy);
+            _accuracyWeightSum.add(weight);
+        }
+    }
+
+    private static long wrap(long nanoDegrees) {
+        if (nanoDegrees >= HALF_TURN) {
+            return nanoDegrees - FULL_TURN;
+        }
+        if (nanoDegrees < -HALF_TURN) {
+            return nanoDegrees + FULL_TURN;
+        }
+        return nanoDegrees;
+    }
+
+    private static double unwrapDegrees(double nanoDegrees) {
+        double degrees = nanoDegrees / FixedPointParser.NANO_DEGREES;
+        if (degrees >= 180) {
+            degrees -= 360;
+        }
+        else if (degrees < -180) {
+            degrees += 360;
+        }
+        return degrees;
+    }
+
+    /**
+     * Neumaier compensated sum, keeps adding and removing window samples from accumulating
+     * rounding error.
+     */
+    private static final class Sum {
+        private double _sum;
+        private double _compensation;
+
+        void add(double value) {
+            final double t = _sum + value;
+            if (Math.abs(_sum) >= Math.abs(value)) {
+                _compensation += (_sum - t) + value;
+            }
+            else {
+                _compensation += (value - t) + _sum;
+            }
+            _sum = t;
+        }
+
+        double value() {
+            return _sum + _compensation;
+        }
+
+        void clear() {
+            _sum = 0;
+            _compensation = 0;
+        }
+    }
+}
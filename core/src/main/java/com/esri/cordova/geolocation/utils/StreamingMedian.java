@@ -0,0 +1,121 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+/**
+ * Median and median absolute deviation (MAD) of the last N values. The window is kept sorted
+ * next to a FIFO of the raw values, so an update is a binary search plus a shift of at most N
+ * elements, and the MAD is found by walking outwards from the median, also at most N steps.
+ * Nothing is allocated after construction. Not threadsafe.
+ */
+public final class StreamingMedian {
+
+    private final long[] _fifo;
+    private final long[] _sorted;
+    private int _head = 0;
+    private int _size = 0;
+
+    public StreamingMedian(int window) {
+        _fifo = new long[Math.max(window, 1)];
+        _sorted = new long[_fifo.length];
+    }
+
+    public void add(long value) {
+        if (_size == _fifo.length) {
+            remove(_fifo[_head]);
+            _fifo[_head] = value;
+            _head = (_head + 1) % _fifo.length;
+        }
+        else {
+            _fifo[(_head + _size) % _fifo.length] = value;
+        }
+        insert(value);
+    }
+
+    public void clear() {
+        _head = 0;
+        _size = 0;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * @return the lower median for an even window, 0 if empty
+     */
+    public long median() {
+        return _size == 0 ? 0 : _sorted[(_size - 1) / 2];
+    }
+
+    /**
+     * @return median of |value - median| over the window, 0 if empty
+     */
+    public long mad() {
+        if (_size == 0) {
+            return 0;
+        }
+        final int mid = (_size - 1) / 2;
+        final long median = _sorted[mid];
+        // Deviations grow monotonically to both sides of the median, merge the two runs
+        int left = mid - 1;
+        int right = mid + 1;
+        long deviation = 0;
+        for (int taken = 1; taken <= mid; taken++) {
+            final long l = left >= 0 ? median - _sorted[left] : Long.MAX_VALUE;
+            final long r = right < _size ? _sorted[right] - median : Long.MAX_VALUE;
+            if (l <= r) {
+                deviation = l;
+                left--;
+            }
+            else {
+                deviation = r;
+                right++;
+            }
+        }
+        return deviation;
+    }
+
+    private void insert(long value) {
+        final int index = search(value);
+        System.arraycopy(_sorted, index, _sorted, index + 1, _size - index);
+        _sorted[index] = value;
+        _size++;
+    }
+
+    private void remove(long value) {
+        final int index = search(value);
+        System.arraycopy(_sorted, index + 1, _sorted, index, _size - index - 1);
+        _size--;
+    }
+
+    // First index whose value is >= the given value
+    private int search(long value) {
+        int low = 0;
+        int high = _size;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (_sorted[mid] < value) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+/**
+ * Turns NMEA times of day into epoch milliseconds with integer arithmetic only, no Date,
+ * Calendar or time zone lookup. The day comes from the last ZDA or RMC date, or from the system
+ * clock until one arrives, and is cached. A time of day more than 12 hours before the previous
+ * one means midnight has passed and advances the day. Not threadsafe.
+ */
+public final class UTCClock {
+
+    public static final long DAY_MS = 86400000L;
+
+    private static final int HALF_DAY_MS = 43200000;
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    private long _day = UNKNOWN; // epoch milliseconds of 00:00 UTC of the current day
+    private int _timeOfDay = 0; // latest time of day seen, for the rollover
+
+    /**
+     * Converts a time of day of the current day, see {@link NMEASentence#parseTimeOfDay(int)}.
+     * @param timeOfDay Milliseconds since midnight UTC
+     * @return Milliseconds since January 1, 1970 UTC
+     */
+    public long toMillis(int timeOfDay) {
+        if (_day == UNKNOWN) {
+            // The day of the system clock, moved by one if the receiver is already past midnight or not yet
+            final long now = System.currentTimeMillis();
+            long day = now - now % DAY_MS;
+            if (day + timeOfDay - now > HALF_DAY_MS) {
+                day -= DAY_MS;
+            }
+            else if (now - (day + timeOfDay) > HALF_DAY_MS) {
+                day += DAY_MS;
+            }
+            _day = day;
+            _timeOfDay = timeOfDay;
+        }
+        else if (timeOfDay - _timeOfDay < -HALF_DAY_MS) {
+            _day += DAY_MS;
+            _timeOfDay = timeOfDay;
+        }
+        else if (timeOfDay - _timeOfDay > HALF_DAY_MS) {
+            // A late sentence from before midnight
+            return _day - DAY_MS + timeOfDay;
+        }
+        else if (timeOfDay > _timeOfDay) {
+            _timeOfDay = timeOfDay;
+        }
+        return _day + timeOfDay;
+    }
+
+    /**
+     * Sets the current day from a receiver date and converts a time of day of that date.
+     * @param month 1 to 12
+     * @param day 1 to 31
+     * @return Milliseconds since January 1, 1970 UTC
+     */
+    public long toMillis(int year, int month, int day, int timeOfDay) {
+        _day = daysFromCivil(year, month, day) * DAY_MS;
+        _timeOfDay = timeOfDay;
+        return _day + timeOfDay;
+    }
+
+    /**
+     * Forgets the cached day, e.g. when a different log starts.
+     */
+    public void reset() {
+        _day = UNKNOWN;
+    }
+
+    /**
+     * Days since January 1, 1970 of a proleptic Gregorian date, after Howard Hinnant's
+     * days_from_civil.
+     * @param month 1 to 12
+     */
+    public static long daysFromCivil(int year, int month, int day) {
+        final long y = month <= 2 ? year - 1 : year;
+        final long era = (y >= 0 ? y : y - 399) / 400;
+        final long yearOfEra = y - era * 400;
+        final long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import com.esri.cordova.geolocation.model.NMEAEpoch;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EpochAssemblerTest {
+
+    private static final int NOON = 12 * 3600 * 1000;
+
+    private final List<Integer> _times = new ArrayList<Integer>();
+    private final List<Integer> _sentences = new ArrayList<Integer>();
+    private final List<Boolean> _rtkAccuracy = new ArrayList<Boolean>();
+    private final NMEAParserRegistry _parsers = NMEAParserRegistry.createDefault();
+    private final PipelineStats _stats = new PipelineStats(_parsers);
+
+    @Test
+    public void lateSentenceInsideTheReorderWindowReachesItsEpoch() {
+        final NMEAPipeline pipeline = pipeline(2);
+        pipeline.process(gga("120000.00"), 0);
+        pipeline.process(gsa(), 0);
+        pipeline.process(gga("120001.00"), 0);
+        pipeline.process(gst("120000.00"), 0);
+        assertEquals(0, _times.size());
+        pipeline.process(gsa(), 0);
+        assertEquals(1, _times.size());
+
+        assertEquals(NOON, (int) _times.get(0));
+        assertEquals(3, (int) _sentences.get(0));
+        assertTrue(_rtkAccuracy.get(0));
+    }
+
+    @Test
+    public void lateSentenceAfterTheWindowIsDropped() {
+        final NMEAPipeline pipeline = pipeline(1);
+        pipeline.process(gga("120000.00"), 0);
+        pipeline.process(gga("120001.00"), 0);
+        pipeline.process(gsa(), 0);
+        assertEquals(1, _times.size());
+
+        pipeline.process(gst("120000.00"), 0);
+        pipeline.flush();
+        assertEquals(2, _times.size());
+        assertEquals(NOON + 1000, (int) _times.get(1));
+        // GGA and GSA, not the late GST
+        assertEquals(2, (int) _sentences.get(1));
+        assertTrue(stats().contains("\"late\":1"));
+    }
+
+    @Test
+    public void withoutAWindowTheEpochIsSentWhenTheNextStarts() {
+        final NMEAPipeline pipeline = pipeline(0);
+        pipeline.process(gga("120000.00"), 0);
+        pipeline.process(gsa(), 0);
+        pipeline.process(gga("120001.00"), 0);
+        assertEquals(1, _times.size());
+        assertEquals(2, (int) _sentences.get(0));
+    }
+
+    @Test
+    public void completeSentenceSetIsSentEarly() {
+        final NMEAPipeline pipeline = pipeline(0);
+        pipeline.getAssembler().expect(_parsers, new String[]{"GGA", "GSA"});
+        pipeline.process(gga("120000.00"), 0);
+        assertNotEquals(0, pipeline.getAssembler().waiting());
+        pipeline.process(gsa(), 0);
+        assertEquals(1, _times.size());
+        assertEquals(0, pipeline.getAssembler().waiting());
+        assertTrue(stats().contains("\"earlyEpochs\":1"));
+    }
+
+    @Test
+    public void timeoutSendsAnIncompleteEpoch() {
+        final NMEAPipeline pipeline = pipeline(0);
+        pipeline.getAssembler().expect(_parsers, new String[]{"GGA", "GSA", "GST"});
+        pipeline.process(gga("120000.00"), 0);
+        pipeline.process(gsa(), 0);
+        assertEquals(0, _times.size());
+
+        pipeline.getAssembler().expire();
+        assertEquals(1, _times.size());
+        assertEquals(2, (int) _sentences.get(0));
+        assertTrue(stats().contains("\"expiredEpochs\":1"));
+
+        // The GST of the expired epoch is late
+        pipeline.process(gst("120000.00"), 0);
+        pipeline.flush();
+        assertEquals(1, _times.size());
+    }
+
+    private NMEAPipeline pipeline(int reorderWindow) {
+        final NMEAPipeline.Sink sink = new NMEAPipeline.Sink() {
+            @Override
+            public void epoch(NMEAEpoch epoch, long timestamp) {
+                _times.add(epoch.timeOfDay);
+                _sentences.add(epoch.sentenceCount);
+                _rtkAccuracy.add(epoch.has(NMEAEpoch.RTK_ACCURACY));
+            }
+        };
+        return new NMEAPipeline(new GPSLocation(new NMEAEpochPool(4)), _parsers, sink, _stats, reorderWindow);
+    }
+
+    private String stats() {
+        return _stats.write(new JSONWriter().beginObject(), _stats.newWindow()).endObject().toString();
+    }
+
+    private static String gga(String time) {
+        return NMEATestData.sentence("GPGGA," + time + ",4807.038,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,");
+    }
+
+    private static String gsa() {
+        return NMEATestData.sentence("GNGSA,A,3,04,05,09,12,24,,,,,,,,2.5,1.3,2.1");
+    }
+
+    private static String gst(String time) {
+        return NMEATestData.sentence("GPGST," + time + ",0.006,0.023,0.020,273.6,0.023,0.020,0.031");
+    }
+}
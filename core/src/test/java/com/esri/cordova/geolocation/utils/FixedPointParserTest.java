@@ -0,0 +1,77 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import com.esri.cordova.geolocation.model.NMEAEpoch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FixedPointParserTest {
+
+    @Test
+    public void parsesSignedDecimals() {
+        assertEquals(-12.345, FixedPointParser.parseDouble("-12.345", 0, 7), 0);
+        assertEquals(545400, FixedPointParser.parseScaled("545.4", 0, 5, 3));
+        assertEquals(-545400, FixedPointParser.parseScaled("-545.4", 0, 6, 3));
+    }
+
+    @Test
+    public void roundsHalfAwayFromZero() {
+        assertEquals(1, FixedPointParser.parseScaled("0.0005", 0, 6, 3));
+        assertEquals(-1, FixedPointParser.parseScaled("-0.0005", 0, 7, 3));
+        assertEquals(0, FixedPointParser.parseScaled("0.0004", 0, 6, 3));
+        assertEquals(0, FixedPointParser.parseScaled("-0.0004", 0, 7, 3));
+    }
+
+    @Test
+    public void convertsCoordinatesToNanoDegrees() {
+        assertEquals(48117300000L, FixedPointParser.parseCoordinateNanoDegrees("4807.038", 0, 8, 2));
+        assertEquals(11516666667L, FixedPointParser.parseCoordinateNanoDegrees("01131.000", 0, 9, 3));
+        // 1e-8 minutes is 1/6 nanodegree, half a nanodegree rounds up
+        assertEquals(0, FixedPointParser.parseCoordinateNanoDegrees("0000.00000002", 0, 13, 2));
+        assertEquals(1, FixedPointParser.parseCoordinateNanoDegrees("0000.00000003", 0, 13, 2));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsMalformedNumbers() {
+        FixedPointParser.parseScaled("1.2x", 0, 4, 3);
+    }
+
+    @Test
+    public void southAndWestMirrorNorthAndEast() {
+        final NMEAEpoch north = parse("GPGGA,120000.00,0000.00000003,N,00000.00000003,E,1,08,0.9,545.4,M,46.9,M,,");
+        final NMEAEpoch south = parse("GPGGA,120000.00,0000.00000003,S,00000.00000003,W,1,08,0.9,545.4,M,46.9,M,,");
+        assertEquals(1, north.latitudeNanoDegrees);
+        assertEquals(1, north.longitudeNanoDegrees);
+        assertEquals(-1, south.latitudeNanoDegrees);
+        assertEquals(-1, south.longitudeNanoDegrees);
+
+        final NMEAEpoch epoch = parse("GPGGA,120000.00,4807.038,S,01131.000,W,1,08,0.9,545.4,M,46.9,M,,");
+        assertEquals(-48117300000L, epoch.latitudeNanoDegrees);
+        assertEquals(-11516666667L, epoch.longitudeNanoDegrees);
+        assertEquals(-48.1173, epoch.latitude, 1e-9);
+    }
+
+    private static NMEAEpoch parse(String body) {
+        final GPSLocation location = new GPSLocation(new NMEAEpochPool(2));
+        final NMEAPipeline pipeline = new NMEAPipeline(location, NMEAParserRegistry.createDefault(), null);
+        pipeline.process(NMEATestData.sentence(body), 0);
+        return location.getEpoch();
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import com.esri.cordova.geolocation.model.NMEAEpoch;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlowControlTest {
+
+    private final NMEAEpochPool _pool = new NMEAEpochPool(8);
+    private final List<Long> _delivered = new ArrayList<Long>();
+    private final FlowControl.Sink _sink = new FlowControl.Sink() {
+        @Override
+        public void deliver(NMEAEpoch epoch, long timestamp) {
+            _delivered.add(timestamp);
+        }
+    };
+    private FlowControl _flow;
+
+    @Before
+    public void setUp() {
+        _flow = new FlowControl(1, FlowControl.QUALITY_CHANGE, 2);
+        assertTrue(_flow.offer(epoch(1), 1, _pool));
+        _flow.consume();
+    }
+
+    @Test
+    public void conflatesToTheNewestEpoch() {
+        assertFalse(_flow.offer(epoch(1), 2, _pool));
+        assertFalse(_flow.offer(epoch(1), 3, _pool));
+        assertFalse(_flow.offer(epoch(1), 4, _pool));
+        assertEquals(1, _flow.pendingCount());
+        assertEquals(2, _flow.dropped());
+
+        _flow.grant(1);
+        _flow.drain(_sink);
+        assertEquals(1, _delivered.size());
+        assertEquals(4L, (long) _delivered.get(0));
+    }
+
+    @Test
+    public void deliversMustDeliverEpochsInArrivalOrder() {
+        _flow.offer(epoch(1), 2, _pool); // conflated, older than the quality change
+        _flow.offer(epoch(4), 3, _pool); // quality change, queued
+        _flow.offer(epoch(4), 4, _pool); // replaces 2
+        assertEquals(2, _flow.pendingCount());
+        assertEquals(1, _flow.dropped());
+
+        _flow.grant(2);
+        _flow.drain(_sink);
+        assertEquals(2, _delivered.size());
+        assertEquals(3L, (long) _delivered.get(0));
+        assertEquals(4L, (long) _delivered.get(1));
+    }
+
+    @Test
+    public void conflatedEpochOlderThanTheQueueGoesFirst() {
+        _flow.offer(epoch(1), 2, _pool);
+        _flow.offer(epoch(4), 3, _pool);
+
+        _flow.grant(2);
+        _flow.drain(_sink);
+        assertEquals(2L, (long) _delivered.get(0));
+        assertEquals(3L, (long) _delivered.get(1));
+    }
+
+    @Test
+    public void fullQueueDropsTheOldestMustDeliverEpoch() {
+        _flow.offer(epoch(4), 2, _pool);
+        _flow.offer(epoch(5), 3, _pool);
+        _flow.offer(epoch(4), 4, _pool);
+        assertEquals(2, _flow.pendingCount());
+        assertEquals(1, _flow.dropped());
+
+        _flow.grant(5);
+        _flow.drain(_sink);
+        assertEquals(2, _delivered.size());
+        assertEquals(3L, (long) _delivered.get(0));
+        assertEquals(4L, (long) _delivered.get(1));
+    }
+
+    @Test
+    public void drainStopsWithoutCredits() {
+        _flow.offer(epoch(4), 2, _pool);
+        _flow.drain(_sink);
+        assertEquals(0, _delivered.size());
+        assertEquals(1, _flow.pendingCount());
+    }
+
+    private NMEAEpoch epoch(int quality) {
+        final NMEAEpoch epoch = _pool.acquire();
+        epoch.quality = quality;
+        return epoch;
+    }
+}
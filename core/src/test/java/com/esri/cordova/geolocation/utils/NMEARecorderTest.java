@@ -0,0 +1,154 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NMEARecorderTest {
+
+    private static final String GGA = NMEATestData.sentence("GPGGA,120000.00,4807.038,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,");
+
+    @Rule
+    public final TemporaryFolder _folder = new TemporaryFolder();
+
+    private final List<String> _sentences = new ArrayList<String>();
+    private final List<Long> _timestamps = new ArrayList<Long>();
+
+    @Test
+    public void roundTripsAcrossRotatedSegments() throws IOException {
+        final File directory = _folder.newFolder();
+        // Room for a few records per segment
+        final NMEARecorder recorder = new NMEARecorder(directory, 256, 0);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(recorder.record(GGA + "\r\n", 1000 + i));
+            if (recorder.needsMaintenance()) {
+                recorder.maintain();
+            }
+        }
+        recorder.close();
+        assertEquals(20, recorder.records());
+        assertEquals(0, recorder.dropped());
+        assertFalse(recorder.record(GGA, 2000));
+
+        final File[] segments = NMEARecorder.listSegments(directory);
+        assertTrue(segments.length > 1);
+        for (File segment : segments) {
+            // Closed segments are truncated to their content, the unused next one is deleted
+            final long records = read(segment);
+            assertEquals(NMEARecorder.HEADER_SIZE + records * (NMEARecorder.RECORD_OVERHEAD + GGA.length()),
+                    segment.length());
+        }
+        assertEquals(20, _sentences.size());
+        for (int i = 0; i < _sentences.size(); i++) {
+            assertEquals(GGA, _sentences.get(i));
+            assertEquals(1000 + i, (long) _timestamps.get(i));
+        }
+    }
+
+    @Test
+    public void readsAnUnclosedSegmentUpToItsTail() throws IOException {
+        final File directory = _folder.newFolder();
+        final NMEARecorder recorder = new NMEARecorder(directory, 4096, 0);
+        recorder.record(GGA, 1);
+        recorder.record(GGA, 2);
+        recorder.sync();
+        try {
+            // Still mapped at full size, as after a crash
+            final File segment = recorder.currentSegment();
+            assertEquals(4096, segment.length());
+            assertEquals(2, read(segment));
+            assertEquals(2, (long) _timestamps.get(1));
+        }
+        finally {
+            recorder.close();
+        }
+    }
+
+    @Test
+    public void rotatesByAge() throws IOException {
+        final File directory = _folder.newFolder();
+        final NMEARecorder recorder = new NMEARecorder(directory, 4096, 1000);
+        recorder.record(GGA, 0);
+        recorder.maintain();
+        recorder.record(GGA, 999);
+        final File first = recorder.currentSegment();
+        recorder.record(GGA, 1000);
+        assertFalse(first.equals(recorder.currentSegment()));
+        recorder.close();
+        assertEquals(2, NMEARecorder.listSegments(directory).length);
+    }
+
+    @Test
+    public void readsTextLogsWithAndWithoutTimestamps() throws IOException {
+        final File log = _folder.newFile("log.txt");
+        final FileWriter writer = new FileWriter(log);
+        try {
+            writer.write(GGA + "\r\n");
+            writer.write("not a sentence\n");
+            writer.write("1479132000000," + GGA + "\n");
+            writer.write(GGA + "\n");
+        }
+        finally {
+            writer.close();
+        }
+        final NMEALogReader reader = new NMEALogReader(log);
+        try {
+            assertTrue(reader.next());
+            assertEquals(GGA, reader.sentence());
+            assertFalse(reader.isTimed());
+            assertTrue(reader.next());
+            assertEquals(1479132000000L, reader.timestamp());
+            assertTrue(reader.isTimed());
+            assertTrue(reader.next());
+            // Keeps the previous timestamp
+            assertEquals(1479132000000L, reader.timestamp());
+            assertFalse(reader.next());
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    private long read(File segment) throws IOException {
+        final NMEALogReader reader = new NMEALogReader(segment);
+        long records = 0;
+        try {
+            assertTrue(reader.isTimed());
+            while (reader.next()) {
+                _sentences.add(reader.sentence());
+                _timestamps.add(reader.timestamp());
+                records++;
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return records;
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NMEARingBufferTest {
+
+    private final List<String> _messages = new ArrayList<String>();
+    private final List<Long> _timestamps = new ArrayList<Long>();
+    private final NMEARingBuffer.Consumer _consumer = new NMEARingBuffer.Consumer() {
+        @Override
+        public void accept(String message, long timestamp) {
+            _messages.add(message);
+            _timestamps.add(timestamp);
+        }
+    };
+
+    @Test
+    public void roundsCapacityUpToAPowerOfTwo() {
+        assertEquals(8, new NMEARingBuffer(5).capacity());
+        assertEquals(4, new NMEARingBuffer(4).capacity());
+    }
+
+    @Test
+    public void keepsOrderAcrossTheWrap() {
+        final NMEARingBuffer ring = new NMEARingBuffer(4);
+        int offered = 0;
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 3; i++, offered++) {
+                assertTrue(ring.offer("m" + offered, offered));
+            }
+            assertEquals(3, ring.drain(_consumer, 8));
+        }
+        assertEquals(15, _messages.size());
+        for (int i = 0; i < _messages.size(); i++) {
+            assertEquals("m" + i, _messages.get(i));
+            assertEquals(i, (long) _timestamps.get(i));
+        }
+        assertEquals(0, ring.size());
+        assertEquals(0, ring.overflows());
+    }
+
+    @Test
+    public void dropsNewMessagesWhenFull() {
+        final NMEARingBuffer ring = new NMEARingBuffer(4);
+        for (int i = 0; i < 3; i++) {
+            ring.offer("a" + i, i);
+        }
+        assertEquals(2, ring.drain(_consumer, 2));
+        for (int i = 0; i < 3; i++) {
+            assertTrue(ring.offer("b" + i, i));
+        }
+        assertFalse(ring.offer("dropped", 9));
+        assertEquals(1, ring.overflows());
+        assertEquals(7, ring.offered());
+        assertEquals(4, ring.highWater());
+
+        assertEquals(4, ring.drain(_consumer, 8));
+        assertEquals("a2", _messages.get(2));
+        assertEquals("b2", _messages.get(5));
+        assertEquals(6, _messages.size());
+    }
+
+    @Test
+    public void drainHonoursTheLimit() {
+        final NMEARingBuffer ring = new NMEARingBuffer(8);
+        for (int i = 0; i < 5; i++) {
+            ring.offer("m" + i, i);
+        }
+        assertEquals(2, ring.drain(_consumer, 2));
+        assertEquals(3, ring.size());
+        assertEquals(3, ring.drain(_consumer, 8));
+        assertEquals(0, ring.drain(_consumer, 8));
+    }
+}
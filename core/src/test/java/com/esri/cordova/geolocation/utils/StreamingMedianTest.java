@@ -0,0 +1,84 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class StreamingMedianTest {
+
+    @Test
+    public void emptyWindowIsZero() {
+        final StreamingMedian median = new StreamingMedian(5);
+        assertEquals(0, median.median());
+        assertEquals(0, median.mad());
+    }
+
+    @Test
+    public void madIgnoresASingleOutlier() {
+        final StreamingMedian median = new StreamingMedian(5);
+        for (long value : new long[]{1, 2, 3, 4, 100}) {
+            median.add(value);
+        }
+        assertEquals(3, median.median());
+        assertEquals(1, median.mad());
+
+        // Slides out 1
+        median.add(5);
+        assertEquals(5, median.size());
+        assertEquals(4, median.median());
+        assertEquals(1, median.mad());
+    }
+
+    @Test
+    public void evenWindowUsesLowerMedian() {
+        final StreamingMedian median = new StreamingMedian(4);
+        for (long value : new long[]{10, -20, 30, 40}) {
+            median.add(value);
+        }
+        assertEquals(10, median.median());
+        // Deviations 0, 20, 30, 30
+        assertEquals(20, median.mad());
+    }
+
+    @Test
+    public void matchesSortingOverASlidingWindow() {
+        final int window = 25;
+        final StreamingMedian median = new StreamingMedian(window);
+        final long[] values = new long[500];
+        final Random random = new Random(42);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(2000) - 1000;
+            median.add(values[i]);
+
+            final long[] sorted = Arrays.copyOfRange(values, Math.max(0, i + 1 - window), i + 1);
+            Arrays.sort(sorted);
+            final int mid = (sorted.length - 1) / 2;
+            final long[] deviations = new long[sorted.length];
+            for (int j = 0; j < sorted.length; j++) {
+                deviations[j] = Math.abs(sorted[j] - sorted[mid]);
+            }
+            Arrays.sort(deviations);
+            assertEquals(sorted[mid], median.median());
+            assertEquals(deviations[mid], median.mad());
+        }
+    }
+}
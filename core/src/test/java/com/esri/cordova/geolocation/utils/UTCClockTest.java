@@ -0,0 +1,61 @@
+/**
+ * @author Andy Gup
+ *
+ * Copyright 2016 Esri
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.​
+ */
+package com.esri.cordova.geolocation.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class UTCClockTest {
+
+    private static final long NOV_14_2016 = 1479081600000L; // 00:00 UTC
+    private static final int BEFORE_MIDNIGHT = (23 * 3600 + 59 * 60 + 59) * 1000;
+
+    @Test
+    public void convertsCivilDates() {
+        assertEquals(0, UTCClock.daysFromCivil(1970, 1, 1));
+        assertEquals(11017, UTCClock.daysFromCivil(2000, 3, 1));
+        assertEquals(NOV_14_2016 / UTCClock.DAY_MS, UTCClock.daysFromCivil(2016, 11, 14));
+        assertEquals(-1, UTCClock.daysFromCivil(1969, 12, 31));
+    }
+
+    @Test
+    public void rollsOverAtMidnight() {
+        final UTCClock clock = new UTCClock();
+        assertEquals(NOV_14_2016 + BEFORE_MIDNIGHT, clock.toMillis(2016, 11, 14, BEFORE_MIDNIGHT));
+        assertEquals(NOV_14_2016 + UTCClock.DAY_MS + 500, clock.toMillis(500));
+        assertEquals(NOV_14_2016 + UTCClock.DAY_MS + 1000, clock.toMillis(1000));
+    }
+
+    @Test
+    public void keepsLateSentencesOnThePreviousDay() {
+        final UTCClock clock = new UTCClock();
+        clock.toMillis(2016, 11, 14, BEFORE_MIDNIGHT);
+        clock.toMillis(500);
+        // A sentence from before midnight that arrives after the rollover
+        assertEquals(NOV_14_2016 + BEFORE_MIDNIGHT, clock.toMillis(BEFORE_MIDNIGHT));
+        // and does not roll the day back
+        assertEquals(NOV_14_2016 + UTCClock.DAY_MS + 1500, clock.toMillis(1500));
+    }
+
+    @Test
+    public void keepsFractionalSeconds() {
+        final UTCClock clock = new UTCClock();
+        assertEquals(NOV_14_2016 + 43200250, clock.toMillis(2016, 11, 14, 43200250));
+        assertEquals(NOV_14_2016 + 43200750, clock.toMillis(43200750));
+    }
+}
@@ -32,8 +32,11 @@ import android.util.Log;
 import com.esri.cordova.geolocation.controllers.GPSController;
 import com.esri.cordova.geolocation.controllers.PermissionsController;
 import com.esri.cordova.geolocation.fragments.GPSAlertDialogFragment;
+import com.esri.cordova.geolocation.model.NMEAOptions;
 import com.esri.cordova.geolocation.utils.ErrorMessages;
+import com.esri.cordova.geolocation.utils.FlowControl;
 import com.esri.cordova.geolocation.utils.JSONHelper;
+import com.esri.cordova.geolocation.utils.NMEARecorder;
 
 import org.apache.cordova.CallbackContext;
 import org.apache.cordova.CordovaInterface;
@@ -44,8 +47,9 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.io.File;
+import java.io.IOException;
+
 
 
 public class AdvancedGeolocation extends CordovaPlugin{
@@ -61,6 +65,10 @@ public class AdvancedGeolocation extends CordovaPlugin{
     private static final String SHARED_PREFS_ACTION = "action";
     private static final int MIN_API_LEVEL = 18;
     private static final int REQUEST_LOCATION_PERMS_CODE = 10;
+    private static final String RECORDER_DIRECTORY = "nmea";
+    private static final int RECORDER_SEGMENT_SIZE = 8 * 1024 * 1024;
+    private static final long RECORDER_ROTATE_MS = 60 * 60 * 1000;
+    private static final long RECORDER_SYNC_MS = 1000;
 
     private static long _minDistance = 0;
     private static long _minTime = 0;
@@ -73,8 +81,10 @@ public class AdvancedGeolocation extends CordovaPlugin{
     private static boolean _buffer = false;
     private static boolean _signalStrength = false;
     private static int _bufferSize = 0;
+    private static NMEAOptions _nmeaOptions = new NMEAOptions();
 
     private static GPSController _gpsController = null;
+    private static NMEARecorder _recorder = null; // null unless the record action is active
     private static CordovaInterface _cordova;
     private static Activity _cordovaActivity;
     private static CallbackContext _callbackContext;
@@ -94,6 +104,30 @@ public class AdvancedGeolocation extends CordovaPlugin{
     }
 
     public boolean execute(final String action, final JSONArray args, final CallbackContext callbackContext) throws JSONException{
+
+        // Flow control acks and recorder actions answer on their own callback and must not
+        // replace the location callback
+        if(action.equals("ack")){
+            ack(args, callbackContext);
+            return true;
+        }
+        if(action.equals("record")){
+            startRecording(args, callbackContext);
+            return true;
+        }
+        if(action.equals("stopRecording")){
+            stopRecording(callbackContext);
+            return true;
+        }
+        if(action.equals("listSegments")){
+            listSegments(callbackContext);
+            return true;
+        }
+        if(action.equals("stats")){
+            stats(callbackContext);
+            return true;
+        }
+
         _callbackContext = callbackContext;
 
         Log.d(TAG, "Action = " + action);
@@ -233,27 +267,58 @@ public class AdvancedGeolocation extends CordovaPlugin{
             stopLocation();
         }
 
-        ExecutorService threadPool = cordova.getThreadPool();
-
         if(_providers.equalsIgnoreCase(PROVIDERS_ALL)){
             _gpsController = new GPSController(
-                    _cordova, _callbackContext, _minDistance, _minTime, _useCache, _returnSatelliteData, _returnNMEAData, _returnLocationData, _buffer, _bufferSize);
-            threadPool.execute(_gpsController);
+                    _cordova, _callbackContext, _minDistance, _minTime, _useCache, _returnSatelliteData, _returnNMEAData, _returnLocationData, _buffer, _bufferSize, _nmeaOptions);
+            _gpsController.start();
 
           
           
         }
         if(_providers.equalsIgnoreCase(PROVIDERS_SOME)){
             _gpsController = new GPSController(
-                    _cordova, _callbackContext, _minDistance, _minTime, _useCache, _returnSatelliteData, _returnNMEAData, _returnLocationData, _buffer, _bufferSize);
-            threadPool.execute(_gpsController);
+                    _cordova, _callbackContext, _minDistance, _minTime, _useCache, _returnSatelliteData, _returnNMEAData, _returnLocationData, _buffer, _bufferSize, _nmeaOptions);
+            _gpsController.start();
 
            
         }
         if(_providers.equalsIgnoreCase(PROVIDERS_GPS)){
             _gpsController = new GPSController(
-                    _cordova, _callbackContext, _minDistance, _minTime, _useCache, _returnSatelliteData, _returnNMEAData, _returnLocationData, _buffer, _bufferSize);
-            threadPool.execute(_gpsController);
+                    _cordova, _callbackContext, _minDistance, _minTime, _useCache, _returnSatelliteData, _returnNMEAData, _returnLocationData, _buffer, _bufferSize, _nmeaOptions);
+            _gpsController.start();
+        }
+    }
+
+    /**
+     * Grants flow control credits to the running controller.
+     * @param args Optional <code>[{"credits": n}]</code>, defaults to one credit
+     * @param callbackContext Receives the current flow control status
+     */
+    private void ack(JSONArray args, CallbackContext callbackContext){
+        final JSONObject obj = args != null ? args.optJSONObject(0) : null;
+        final int credits = obj != null ? obj.optInt("credits", 1) : 1;
+        final String status = _gpsController != null ? _gpsController.ack(credits) : null;
+        if(status != null){
+            callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, status));
+        }
+        else {
+            callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.ERROR,
+                    JSONHelper.errorJSON(PROVIDER_PRIMARY, ErrorMessages.FLOW_CONTROL_DISABLED())));
+        }
+    }
+
+    /**
+     * Reports the NMEA pipeline counters and latency histograms of the running controller.
+     * @param callbackContext Receives the stats JSON
+     */
+    private void stats(CallbackContext callbackContext){
+        final GPSController controller = _gpsController;
+        if(controller != null){
+            callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, controller.statsJSON()));
+        }
+        else {
+            callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.ERROR,
+                    JSONHelper.errorJSON(PROVIDER_PRIMARY, ErrorMessages.STATS_UNAVAILABLE())));
         }
     }
 
@@ -263,8 +328,8 @@ public class AdvancedGeolocation extends CordovaPlugin{
     private void stopLocation(){
 
         if(_gpsController != null){
-            // Gracefully attempt to stop location
-            _gpsController.stopLocation();
+            // Stops the controller thread, waits a bounded time for it to end
+            _gpsController.stop();
 
             // make sure there are no references
             _gpsController = null;
@@ -346,12 +411,11 @@ public class AdvancedGeolocation extends CordovaPlugin{
 
     public void onDestroy(){
         Log.d(TAG, "onDestroy");
-        if(_cordova.getThreadPool() != null){
-            stopLocation();
-            removeActionPreferences();
-            shutdownAndAwaitTermination(_cordova.getThreadPool());
-            _cordovaActivity.finish();
-        }
+        // The Cordova thread pool is shared with other plugins and is not ours to shut down
+        stopLocation();
+        closeRecorder();
+        removeActionPreferences();
+        _cordovaActivity.finish();
     }
 
 
@@ -361,34 +425,6 @@ public class AdvancedGeolocation extends CordovaPlugin{
     //
     //
 
-    /**
-     * Shutdown cordova thread pool. This assumes we are in control of all tasks running
-     * in the thread pool.
-     * Additional info: http://developer.android.com/reference/java/util/concurrent/ExecutorService.html
-     * @param pool Cordova application's thread pool
-     */
-    private void shutdownAndAwaitTermination(ExecutorService pool) {
-        Log.d(TAG,"Attempting to shutdown cordova threadpool");
-        if(!pool.isShutdown()){
-            try {
-                // Disable new tasks from being submitted
-                pool.shutdown();
-                // Wait a while for existing tasks to terminate
-                if (!pool.awaitTermination(5, TimeUnit.SECONDS)) {
-                    pool.shutdownNow(); // Cancel currently executing tasks
-                    // Wait a while for tasks to respond to being cancelled
-                    if (!pool.awaitTermination(30, TimeUnit.SECONDS)) {
-                        System.err.println("Cordova thread pool did not terminate.");
-                    }
-                }
-            }
-            catch (InterruptedException ie) {
-                // Preserve interrupt status
-                Thread.currentThread().interrupt();
-            }
-        }
-    }
-
     /**
      * Callback handler for this Class
      * @param status Message status
@@ -435,6 +471,7 @@ public class AdvancedGeolocation extends CordovaPlugin{
                 _buffer = obj.getBoolean("buffer");
                 _signalStrength = obj.getBoolean("signalStrength");
                 _bufferSize = obj.getInt("bufferSize");
+                _nmeaOptions = parseNMEAOptions(obj);
 
             }
             catch (Exception exc){
@@ -443,4 +480,172 @@ public class AdvancedGeolocation extends CordovaPlugin{
             }
         }
     }
+
+    /**
+     * Starts appending every raw NMEA sentence to memory-mapped segment files. Recording runs
+     * independently of start and stop until stopRecording is called.
+     */
+    private void startRecording(JSONArray args, CallbackContext callbackContext){
+        final JSONObject obj = args != null ? args.optJSONObject(0) : null;
+        final int segmentSize = obj != null ? obj.optInt("segmentSize", RECORDER_SEGMENT_SIZE) : RECORDER_SEGMENT_SIZE;
+        final long rotateIntervalMs = obj != null ? obj.optLong("rotateIntervalMs", RECORDER_ROTATE_MS) : RECORDER_ROTATE_MS;
+        final long syncIntervalMs = obj != null ? obj.optLong("syncIntervalMs", RECORDER_SYNC_MS) : RECORDER_SYNC_MS;
+
+        synchronized (AdvancedGeolocation.class){
+            if(_recorder == null){
+                try {
+                    _recorder = new NMEARecorder(getRecorderDirectory(), segmentSize, rotateIntervalMs);
+                }
+                catch(IOException exc){
+                    Log.e(TAG, "Unable to start NMEA recorder. " + exc.getMessage());
+                    callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.ERROR,
+                            JSONHelper.errorJSON(PROVIDER_PRIMARY, ErrorMessages.RECORDER_FAILED(exc.getMessage()))));
+                    return;
+                }
+                GPSController.setRecorder(_recorder, syncIntervalMs);
+            }
+            callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, recorderStatus(_recorder, true)));
+        }
+    }
+
+    private void stopRecording(CallbackContext callbackContext){
+        synchronized (AdvancedGeolocation.class){
+            final NMEARecorder recorder = _recorder;
+            final String error = closeRecorder();
+            if(error != null){
+                callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.ERROR,
+                        JSONHelper.errorJSON(PROVIDER_PRIMARY, ErrorMessages.RECORDER_FAILED(error))));
+                return;
+            }
+            callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, recorderStatus(recorder, false)));
+        }
+    }
+
+    private void listSegments(CallbackContext callbackContext){
+        final JSONArray segments = new JSONArray();
+        try {
+            for(File file : NMEARecorder.listSegments(getRecorderDirectory())){
+                final JSONObject segment = new JSONObject();
+                segment.put("name", file.getName());
+                segment.put("path", file.getAbsolutePath());
+                segment.put("size", file.length());
+                segment.put("lastModified", file.lastModified());
+                segments.put(segment);
+            }
+        }
+        catch(JSONException exc){
+            Log.e(TAG, exc.getMessage());
+        }
+        callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, segments));
+    }
+
+    /**
+     * @return error message if the last segment could not be closed cleanly, otherwise null
+     */
+    private static String closeRecorder(){
+        synchronized (AdvancedGeolocation.class){
+            final NMEARecorder recorder = _recorder;
+            if(recorder == null){
+                return null;
+            }
+            _recorder = null;
+            GPSController.setRecorder(null, 0);
+            try {
+                recorder.close();
+            }
+            catch(IOException exc){
+                Log.e(TAG, "Unable to close NMEA recorder. " + exc.getMessage());
+                return exc.getMessage();
+            }
+            return null;
+        }
+    }
+
+    private static String recorderStatus(NMEARecorder recorder, boolean recording){
+        final JSONObject json = new JSONObject();
+        try {
+            json.put("recording", recording);
+            if(recorder != null){
+                final File segment = recorder.currentSegment();
+                json.put("directory", recorder.getDirectory().getAbsolutePath());
+                json.put("segment", segment != null ? segment.getName() : JSONObject.NULL);
+                json.put("records", recorder.records());
+                json.put("dropped", recorder.dropped());
+            }
+        }
+        catch(JSONException exc){
+            Log.e(TAG, exc.getMessage());
+        }
+        return json.toString();
+    }
+
+    private File getRecorderDirectory(){
+        return new File(_cordovaActivity.getFilesDir(), RECORDER_DIRECTORY);
+    }
+
+    /**
+     * Reads the optional NMEA settings. Missing values keep their defaults.
+     */
+    private NMEAOptions parseNMEAOptions(JSONObject obj){
+        final NMEAOptions options = new NMEAOptions();
+        options.precision = obj.optInt("precision", options.precision);
+        options.binary = obj.optBoolean("binary", options.binary);
+        options.batchSize = obj.optInt("batchSize", options.batchSize);
+        options.batchIntervalMs = obj.optLong("batchIntervalMs", options.batchIntervalMs);
+        options.credits = obj.optInt("credits", options.credits);
+        options.ringBufferSize = obj.optInt("ringBufferSize", options.ringBufferSize);
+        options.outlierThreshold = obj.optDouble("outlierThreshold", options.outlierThreshold);
+        options.kalman = obj.optBoolean("kalman", options.kalman);
+        options.kalmanAcceleration = obj.optDouble("kalmanAcceleration", options.kalmanAcceleration);
+        options.replaySpeed = obj.optDouble("replaySpeed", options.replaySpeed);
+        options.reorderWindow = obj.optInt("reorderWindow", options.reorderWindow);
+        options.statsIntervalMs = obj.optLong("statsIntervalMs", options.statsIntervalMs);
+        options.skyView = obj.optBoolean("skyView", options.skyView);
+        options.satelliteIntervalMs = obj.optLong("satelliteIntervalMs", options.satelliteIntervalMs);
+        options.arbitrate = obj.optBoolean("arbitrate", options.arbitrate);
+        options.arbitrationWindowMs = obj.optLong("arbitrationWindowMs", options.arbitrationWindowMs);
+        options.epochTimeoutMs = obj.optLong("epochTimeoutMs", options.epochTimeoutMs);
+
+        // An array of sentence types, or "auto" to learn them
+        final JSONArray epochSentences = obj.optJSONArray("epochSentences");
+        if(epochSentences != null){
+            options.epochSentences = new String[epochSentences.length()];
+            for(int i = 0; i < epochSentences.length(); i++){
+                options.epochSentences[i] = epochSentences.optString(i);
+            }
+        }
+        else if(obj.optString("epochSentences").equals("auto")){
+            options.learnEpochSentences = true;
+        }
+
+        // A single path or an array of paths
+        final JSONArray replay = obj.optJSONArray("replay");
+        if(replay != null){
+            options.replay = new String[replay.length()];
+            for(int i = 0; i < replay.length(); i++){
+                options.replay[i] = replay.optString(i);
+            }
+        }
+        else if(obj.optString("replay").length() > 0){
+            options.replay = new String[]{obj.optString("replay")};
+        }
+        if(obj.optString("averaging").equals("weighted")){
+            options.averaging = NMEAOptions.AVERAGING_WEIGHTED;
+        }
+
+        final JSONArray mustDeliver = obj.optJSONArray("mustDeliver");
+        if(mustDeliver != null){
+            options.mustDeliver = 0;
+            for(int i = 0; i < mustDeliver.length(); i++){
+                final String event = mustDeliver.optString(i);
+                if(event.equals("quality")){
+                    options.mustDeliver |= FlowControl.QUALITY_CHANGE;
+                }
+                else if(event.equals("fixtype")){
+                    options.mustDeliver |= FlowControl.FIXTYPE_CHANGE;
+                }
+            }
+        }
+        return options;
+    }
 }
@@ -18,6 +18,7 @@ package com.esri.cordova.geolocation.controllers;
 
 
 import android.content.Context;
+import android.location.GnssStatus;
 import android.location.GpsStatus;
 import android.location.Location;
 import android.location.LocationListener;
@@ -26,26 +27,44 @@ import android.location.LocationProvider;
 import android.location.OnNmeaMessageListener;
 import android.location.GpsStatus.NmeaListener;
 import android.os.Bundle;
-import android.os.Looper;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.os.Build;
 import android.util.Log;
 
 import com.esri.cordova.geolocation.model.InitStatus;
+import com.esri.cordova.geolocation.model.NMEAOptions;
 import com.esri.cordova.geolocation.utils.ErrorMessages;
-import com.esri.cordova.geolocation.utils.GPSLocation;
+import com.esri.cordova.geolocation.utils.FixArbitrator;
 import com.esri.cordova.geolocation.utils.JSONHelper;
+import com.esri.cordova.geolocation.utils.JSONWriter;
+import com.esri.cordova.geolocation.utils.NMEAEngine;
+import com.esri.cordova.geolocation.utils.NMEARecorder;
+import com.esri.cordova.geolocation.utils.NMEAReplay;
+import com.esri.cordova.geolocation.utils.NMEARingBuffer;
+import com.esri.cordova.geolocation.utils.PipelineStats;
+import com.esri.cordova.geolocation.utils.SatelliteFeed;
 
 import org.apache.cordova.CallbackContext;
 import org.apache.cordova.CordovaInterface;
 import org.apache.cordova.PluginResult;
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public final class GPSController implements Runnable {
+public final class GPSController {
 
     private static LocationManager _locationManager = null;
     private static LocationListener _locationListenerGPSProvider = null;
     private static OnNmeaMessageListener _nmeaListener = null;
     private static GpsStatus.NmeaListener _nmeaStatusListener = null;
+    private static GnssStatus.Callback _gnssStatusCallback = null;
+    private static SatelliteFeed _satelliteFeed = null; // reused for every GnssStatus update
+    private static NMEAReplay _replay = null; // replaces _nmeaListener when the replay option is set
+    private static Thread _replayThread = null;
     
     private static CallbackContext _callbackContext; // Threadsafe
     private static CordovaInterface _cordova;
@@ -58,12 +77,30 @@ public final class GPSController implements Runnable {
     private static boolean _returnSatelliteData = false;
     private static boolean _returnNMEAData = false;
     private static boolean _returnLocationData = false;
-    private static GPSLocation gpsloc = new GPSLocation();
+    private static NMEAOptions _nmeaOptions = new NMEAOptions();
+    private static NMEAEngine _engine = null; // parsing, filters, flow control and batching
+    private static PipelineStats.RateWindow _pushWindow = null; // rates of the statsIntervalMs push
+    private static PipelineStats.RateWindow _queryWindow = null; // rates of the stats action
+    private static Handler _handler = null;
+    private HandlerThread _thread = null;
+    private static NMEARingBuffer _ring = null; // listener thread -> parser thread
+    private static Handler _parserHandler = null;
+    private HandlerThread _parserThread = null;
+    private static final AtomicBoolean _parseScheduled = new AtomicBoolean(false);
+    private static long _reportedOverflows = 0;
+    private static volatile NMEARecorder _recorder = null; // null unless the record action is active
+    private static long _recordSyncMs = 0;
+    private static boolean _recorderFailed = false; // maintenance error already reported
+    private static long _lastOverflowReport = 0;
 
     private static final String TAG = "GeolocationPlugin";
-    private ArrayList<String> nmeaMessages = new ArrayList<String>();
-    private ArrayList<String> parsingErrors = new ArrayList<String>();
-    private ArrayList<String> parsedTypes = new ArrayList<String>();
+    private static final String THREAD_NAME = "GPSController";
+    private static final String PARSER_THREAD_NAME = "GPSController-NMEA";
+    private static final String REPLAY_THREAD_NAME = "GPSController-Replay";
+    private static final long STOP_TIMEOUT_MS = 2000;
+    private static final long JOIN_TIMEOUT_MS = 1000;
+    private static final int PARSE_CHUNK = 64; // messages per parse task, lets flush and drain tasks interleave
+    private static final long OVERFLOW_REPORT_INTERVAL_MS = 1000;
 
     public GPSController(
             CordovaInterface cordova,
@@ -75,7 +112,8 @@ public final class GPSController implements Runnable {
             boolean returnNMEAData,
             boolean returnLocationData,
             boolean buffer,
-            int bufferSize
+            int bufferSize,
+            NMEAOptions nmeaOptions
     ){
         _cordova = cordova;
         _callbackContext = callbackContext;
@@ -87,19 +125,97 @@ public final class GPSController implements Runnable {
         _bufferSize = bufferSize;
         _returnNMEAData = returnNMEAData;
         _returnLocationData = returnLocationData;
+        _nmeaOptions = nmeaOptions;
+
+        _engine = new NMEAEngine(nmeaOptions, buffer ? bufferSize : 0, _transport, _scheduler);
+        _pushWindow = _engine.getStats().newWindow();
+        _queryWindow = _engine.getStats().newWindow();
+        _ring = new NMEARingBuffer(nmeaOptions.ringBufferSize);
+        _reportedOverflows = 0;
     }
 
-    public void run(){
+    /**
+     * Starts the controller on its own HandlerThread, so no Cordova pool thread is blocked.
+     * Location callbacks run on that thread's Looper. NMEA messages are only queued there and
+     * parsed, batched and sent on a second HandlerThread.
+     */
+    public synchronized void start(){
+        if(_thread != null){
+            return;
+        }
+        _parserThread = new HandlerThread(PARSER_THREAD_NAME, android.os.Process.THREAD_PRIORITY_DEFAULT);
+        _parserThread.start();
+        _parserHandler = new Handler(_parserThread.getLooper());
+        _parseScheduled.set(false);
+        if(_recorder != null){
+            _parserHandler.post(_syncTask);
+        }
+        if(_nmeaOptions.statsIntervalMs > 0){
+            _parserHandler.postDelayed(_statsTask, _nmeaOptions.statsIntervalMs);
+        }
+
         // Reference: http://developer.android.com/reference/android/os/Process.html#THREAD_PRIORITY_BACKGROUND
-        // android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
-        android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_DEFAULT);
+        _thread = new HandlerThread(THREAD_NAME, android.os.Process.THREAD_PRIORITY_DEFAULT);
+        _thread.start();
+        _handler = new Handler(_thread.getLooper());
+        _handler.post(new Runnable() {
+            @Override
+            public void run() {
+                _locationManager = (LocationManager) _cordova.getActivity().getSystemService(Context.LOCATION_SERVICE);
+                startLocation();
+            }
+        });
+    }
 
-        // We are running a Looper to allow the Cordova CallbackContext to be passed within the Thread as a message.
-        if(Looper.myLooper() == null){
-            _locationManager = (LocationManager) _cordova.getActivity().getSystemService(Context.LOCATION_SERVICE);
-            Looper.prepare();
-            startLocation();
-            Looper.loop();
+    /**
+     * Stops location updates on the controller thread, then quits both Loopers and waits for the
+     * threads to end. All waits are bounded. Safe to call from any thread, more than once.
+     */
+    public synchronized void stop(){
+        final HandlerThread thread = _thread;
+        final HandlerThread parserThread = _parserThread;
+        if(thread == null){
+            return;
+        }
+        _thread = null;
+        _parserThread = null;
+
+        if(Thread.currentThread() == thread){
+            stopLocation();
+            thread.quitSafely();
+            parserThread.quitSafely();
+            return;
+        }
+
+        final CountDownLatch stopped = new CountDownLatch(1);
+        final boolean posted = _handler.post(new Runnable() {
+            @Override
+            public void run() {
+                stopLocation();
+                stopped.countDown();
+            }
+        });
+
+        try {
+            if(!posted){
+                // The Looper is already gone, e.g. after an uncaught exception
+                stopLocation();
+            }
+            else if(!stopped.await(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)){
+                Log.w(TAG, "GPSController did not stop within " + STOP_TIMEOUT_MS + "ms");
+            }
+            thread.quitSafely();
+            thread.join(JOIN_TIMEOUT_MS);
+            // Runs the finish task posted by stopLocation() before the Looper ends
+            parserThread.quitSafely();
+            parserThread.join(JOIN_TIMEOUT_MS);
+            if(thread.isAlive() || parserThread.isAlive()){
+                Log.w(TAG, "GPSController threads did not end within " + JOIN_TIMEOUT_MS + "ms");
+            }
+        }
+        catch(InterruptedException exc){
+            // Preserve interrupt status of the calling thread
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -122,15 +238,31 @@ public final class GPSController implements Runnable {
             });
 
 
-            final InitStatus gpsListener = new InitStatus(); 
-            gpsListener.success = true;//setLocationListenerGPSProvider();
-            InitStatus nmeaListener = new InitStatus(); // setNMEAProvider();
-            //final InitStatus nmeaListener = setNMEAProvider();
-            //InitStatus nmeaListener = new InitStatus();
-            if (_returnNMEAData) {
+            // Both sources run together, with arbitrate their fixes are paired on the parser thread
+            final InitStatus gpsListener = _returnLocationData
+                    ? setLocationListenerGPSProvider() : new InitStatus();
+            InitStatus nmeaListener = new InitStatus();
+            if (_nmeaOptions.replay != null) {
+                nmeaListener = setReplayProvider();
+            }
+            else if (_returnNMEAData) {
                 nmeaListener = setNMEAProvider();
             }
 
+            if (_returnSatelliteData) {
+                final InitStatus satelliteListener = setGnssStatusProvider();
+                if (!satelliteListener.success) {
+                    if (satelliteListener.exception == null) {
+                        sendCallback(PluginResult.Status.ERROR,
+                                JSONHelper.errorJSON(SatelliteFeed.PROVIDER, satelliteListener.error));
+                    }
+                    else {
+                        sendCallback(PluginResult.Status.ERROR,
+                                JSONHelper.errorJSON(SatelliteFeed.PROVIDER, satelliteListener.exception));
+                    }
+                }
+            }
+
 
             if(!gpsListener.success ||  !nmeaListener.success){
                 if (!nmeaListener.success) {
@@ -167,9 +299,9 @@ public final class GPSController implements Runnable {
     }
 
     /**
-     * Full stop using brute force. Works with many Android versions.
+     * Removes all listeners. Runs on the controller thread, see {@link #stop()}.
      */
-    public void stopLocation(){
+    private void stopLocation(){
 
         if(_locationManager != null){
             Log.d(TAG, "Attempting to stop gps geolocation");
@@ -198,16 +330,23 @@ public final class GPSController implements Runnable {
                 _nmeaListener = null;
             }
 
-            _locationManager = null;
-
+            if(_gnssStatusCallback != null){
+                _locationManager.unregisterGnssStatusCallback(_gnssStatusCallback);
+                _gnssStatusCallback = null;
+            }
 
-            try {
-                Thread.currentThread().interrupt();
+            if(_replay != null){
+                _replay.stop();
+                _replayThread.interrupt();
+                _replay = null;
+                _replayThread = null;
             }
-            catch(SecurityException exc){
-                Log.e(TAG, exc.getMessage());
-                sendCallback(PluginResult.Status.ERROR,
-                        JSONHelper.errorJSON(LocationManager.GPS_PROVIDER, ErrorMessages.FAILED_THREAD_INTERRUPT()));
+
+            _locationManager = null;
+
+            // Parse and deliver whatever is still queued before shutting down
+            if(_parserHandler != null){
+                _parserHandler.post(_finishTask);
             }
         }
         else{
@@ -229,6 +368,291 @@ public final class GPSController implements Runnable {
     }
 
 
+    /**
+     * Grants credits for further callbacks and delivers held epochs on the parser thread.
+     * @param credits Number of additional callbacks JavaScript accepts
+     * @return Flow control status JSON, or null if flow control is not enabled
+     */
+    public String ack(int credits){
+        return _engine != null ? _engine.ack(credits) : null;
+    }
+
+    /**
+     * Sends the engine's payloads as Cordova callbacks.
+     */
+    private static final NMEAEngine.Transport _transport = new NMEAEngine.Transport() {
+        @Override
+        public void send(String json) {
+            sendCallback(PluginResult.Status.OK, json);
+        }
+
+        @Override
+        public void send(byte[] data) {
+            sendCallback(PluginResult.Status.OK, data);
+        }
+    };
+
+    /**
+     * Runs the engine's flush and drain tasks on the parser thread.
+     */
+    private static final NMEAEngine.Scheduler _scheduler = new NMEAEngine.Scheduler() {
+        @Override
+        public void post(Runnable task, long delayMs) {
+            final Handler handler = _parserHandler;
+            if(handler != null){
+                handler.postDelayed(task, delayMs);
+            }
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            final Handler handler = _parserHandler;
+            if(handler != null){
+                handler.removeCallbacks(task);
+            }
+        }
+
+        @Override
+        public long uptimeMillis() {
+            return SystemClock.elapsedRealtime();
+        }
+    };
+
+    private final NMEARingBuffer.Consumer _ringConsumer = new NMEARingBuffer.Consumer() {
+        @Override
+        public void accept(String message, long timestamp) {
+            try {
+                // Invalid sentences and parse errors are counted in PipelineStats
+                _engine.process(message, timestamp);
+            } catch (Exception exc) {
+                sendCallback(PluginResult.Status.ERROR,
+                        JSONHelper.errorJSON("NMEA", "Could not parse"
+                                + exc.getMessage() + "- " + message));
+            }
+        }
+    };
+
+    /**
+     * Drains the ring on the parser thread. Posted by the listener only while not already scheduled.
+     */
+    private final Runnable _parseTask = new Runnable() {
+        @Override
+        public void run() {
+            // Clear first, a message offered during the drain schedules another run
+            _parseScheduled.set(false);
+            _engine.getStats().backlog.record(_ring.size());
+            if(_ring.drain(_ringConsumer, PARSE_CHUNK) == PARSE_CHUNK
+                    && _parseScheduled.compareAndSet(false, true)){
+                _parserHandler.post(this);
+            }
+            reportOverflows(false);
+            maintainRecorder(false);
+        }
+    };
+
+    /**
+     * Parses what is left in the ring and delivers anything still waiting in a batch.
+     */
+    private final Runnable _finishTask = new Runnable() {
+        @Override
+        public void run() {
+            while(_ring.drain(_ringConsumer, PARSE_CHUNK) > 0){
+                // keep draining
+            }
+            reportOverflows(true);
+            _parserHandler.removeCallbacks(_syncTask);
+            _parserHandler.removeCallbacks(_statsTask);
+            maintainRecorder(true);
+            _engine.finish();
+        }
+    };
+
+    /**
+     * Pipeline counters and latency histograms, see PipelineStats, plus the ring and flow
+     * control backlog. Rates are since the previous call, independent of the statsIntervalMs
+     * push. Safe to call from any thread.
+     */
+    public String statsJSON(){
+        return statsJSON(_queryWindow);
+    }
+
+    private static String statsJSON(PipelineStats.RateWindow window){
+        final JSONWriter writer = new JSONWriter(2048).beginObject()
+                .name("provider", "stats")
+                .name("timestamp", System.currentTimeMillis())
+                .name("stats").beginObject();
+        _engine.getStats().write(writer, window)
+                .name("ring", _ring.size())
+                .name("ringCapacity", _ring.capacity())
+                .name("ringHighWater", _ring.highWater())
+                .name("overflows", _ring.overflows())
+                .name("pending", _engine.pendingCount());
+        final FixArbitrator arbitrator = _engine.getArbitrator();
+        if(arbitrator != null){
+            writer.name("paired", arbitrator.paired())
+                    .name("epochsOnly", arbitrator.epochsOnly())
+                    .name("locationsOnly", arbitrator.locationsOnly());
+        }
+        return writer.endObject().endObject().toString();
+    }
+
+    private final Runnable _statsTask = new Runnable() {
+        @Override
+        public void run() {
+            sendCallback(PluginResult.Status.OK, statsJSON(_pushWindow));
+            _parserHandler.postDelayed(this, _nmeaOptions.statsIntervalMs);
+        }
+    };
+
+    /**
+     * Sets or removes the raw NMEA recorder. Sentences are appended on the listener thread, the
+     * recorder is synced to storage every syncIntervalMs and its segments are mapped and closed
+     * on the parser thread.
+     * @param recorder Open recorder, or null to stop recording. The caller closes it.
+     */
+    public static void setRecorder(NMEARecorder recorder, long syncIntervalMs){
+        _recordSyncMs = syncIntervalMs;
+        _recorder = recorder;
+        final Handler handler = _parserHandler;
+        if(handler != null){
+            handler.removeCallbacks(_syncTask);
+            if(recorder != null){
+                handler.post(_syncTask);
+            }
+        }
+    }
+
+    private static final Runnable _syncTask = new Runnable() {
+        @Override
+        public void run() {
+            if(_recorder == null){
+                return;
+            }
+            maintainRecorder(true);
+            if(_recordSyncMs > 0){
+                _parserHandler.postDelayed(this, _recordSyncMs);
+            }
+        }
+    };
+
+    /**
+     * Closes the segment the listener rotated away from and maps the next one, so rotation on
+     * the listener thread is a reference swap. Runs on the parser thread.
+     * @param sync Also flush the current segment to storage
+     */
+    private static void maintainRecorder(boolean sync){
+        final NMEARecorder recorder = _recorder;
+        if(recorder == null){
+            return;
+        }
+        if(recorder.needsMaintenance()){
+            try {
+                recorder.maintain();
+                _recorderFailed = false;
+            }
+            catch(IOException exc){
+                if(!_recorderFailed){
+                    Log.e(TAG, "NMEA recorder maintenance failed. " + exc.getMessage());
+                    sendCallback(PluginResult.Status.ERROR,
+                            JSONHelper.errorJSON("NMEA", ErrorMessages.RECORDER_FAILED(exc.getMessage())));
+                    _recorderFailed = true;
+                }
+            }
+        }
+        if(sync){
+            recorder.sync();
+        }
+    }
+
+    /**
+     * Tells JavaScript that NMEA messages were dropped because the ring was full. Reports at most
+     * once per OVERFLOW_REPORT_INTERVAL_MS so the error callbacks do not add to the backlog.
+     */
+    private static void reportOverflows(boolean force){
+        final long overflows = _ring.overflows();
+        if(overflows == _reportedOverflows){
+            return;
+        }
+        final long now = SystemClock.elapsedRealtime();
+        if(!force && now - _lastOverflowReport < OVERFLOW_REPORT_INTERVAL_MS){
+            return;
+        }
+        Log.w(TAG, "NMEA ring buffer full, " + (overflows - _reportedOverflows) + " messages dropped");
+        sendCallback(PluginResult.Status.ERROR,
+                JSONHelper.errorJSON("NMEA", ErrorMessages.NMEA_BUFFER_OVERFLOW(overflows, _ring.capacity())));
+        _reportedOverflows = overflows;
+        _lastOverflowReport = now;
+    }
+
+    /**
+     * Callback handler for binary payloads, delivered as an ArrayBuffer in JavaScript
+     * @param status Message status
+     * @param data Bytes to send, encoded immediately so the array may be reused
+     */
+    private static void sendCallback(PluginResult.Status status, byte[] data){
+        if(!Thread.currentThread().isInterrupted()){
+            final PluginResult result = new PluginResult(status, data);
+            result.setKeepCallback(true);
+            _callbackContext.sendPluginResult(result);
+        }
+    }
+
+
+    /**
+     * Entry point for every NMEA message, live or replayed. Runs on the delivering thread and
+     * only records and queues the message, see _parseTask. Live and replayed messages never
+     * arrive at the same time, so the ring keeps a single producer.
+     */
+    private void receiveNmea(String message, long timestamp){
+        // Recorded before the ring, so sentences the parser drops are still on disk
+        final NMEARecorder recorder = _recorder;
+        if (recorder != null) {
+            recorder.record(message, timestamp);
+        }
+        // O(1) hand-off, parsing happens on the parser thread
+        _ring.offer(message, timestamp);
+        if (_parseScheduled.compareAndSet(false, true)) {
+            _parserHandler.post(_parseTask);
+        }
+    }
+
+    /**
+     * Plays the logs from the replay option through receiveNmea in place of the NMEA listener.
+     */
+    private InitStatus setReplayProvider(){
+        final InitStatus status = new InitStatus();
+        final File[] files = new File[_nmeaOptions.replay.length];
+        for(int i = 0; i < files.length; i++){
+            files[i] = new File(_nmeaOptions.replay[i]);
+            if(!files[i].canRead()){
+                status.success = false;
+                status.error = ErrorMessages.REPLAY_FAILED("Unable to read " + files[i]);
+                return status;
+            }
+        }
+        final NMEAReplay replay = new NMEAReplay(files, _nmeaOptions.replaySpeed, new NMEAReplay.Sink() {
+            @Override
+            public void onNmeaMessage(String message, long timestamp) {
+                receiveNmea(message, timestamp);
+            }
+        });
+        _replay = replay;
+        _replayThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                replay.run();
+                Log.d(TAG, "NMEA replay ended after " + replay.sentences() + " sentences");
+                if(replay.getError() != null){
+                    sendCallback(PluginResult.Status.ERROR, JSONHelper.errorJSON("NMEA",
+                            ErrorMessages.REPLAY_FAILED(replay.getError().getMessage())));
+                }
+            }
+        }, REPLAY_THREAD_NAME);
+        Log.d(TAG, "Starting NMEA replay");
+        _replayThread.start();
+        return status;
+    }
+
     /* Für Android 6 */
     private InitStatus setNMEAProvider(){
     	final InitStatus status = new InitStatus();
@@ -236,80 +660,8 @@ public final class GPSController implements Runnable {
         	_nmeaListener = new OnNmeaMessageListener() {
 
         		public void onNmeaMessage(String message, long timestamp) {
-        		
-                //if(!Thread.currentThread().isInterrupted()){
-                    try {
-                        /* Adding Sentences to Object */
-                        gpsloc.addSentence(message);
-                        /* Parsing NMEA Data to Object */
-                        if (gpsloc.getUTC(message)!=null) {
-                            if(!gpsloc.checkUTC(gpsloc.getUTC(message))) {
-                                /* Auswerten des Objektes und zurücksenden! */
-                                String loc = gpsloc.getLocation(parsingErrors, parsedTypes);
-                                if (loc != null) {
-                                    sendCallback(PluginResult.Status.OK,
-                                        JSONHelper.nmeaJSON("NMEA", loc, timestamp));
-                                }
-                            //	parsingErrors = new ArrayList<String>();
-                            //	parsedTypes = new ArrayList<String>();
-                                gpsloc.clear();
-                            }
-                        }
-                        /* Gehört noch zur Serie */
-                        String mt = null;
-                        try {
-                            mt = gpsloc.messageType(message);
-                            //parsedTypes.add(mt);
-                        } catch (Exception exc) {
-                            sendCallback(PluginResult.Status.ERROR,
-                                    JSONHelper.errorJSON("NMEA", "Could not get Message type"
-                                + exc.getMessage() + "- "+message));
-                        }
-
-                        try {
-                            if (mt != null && !mt.isEmpty()) {
-                                mt = mt.toUpperCase();
-                                //parsedTypes.add(mt);
-                                if (mt.equalsIgnoreCase("GST")) {
-                                        gpsloc.parseGST(message);
-                                        if (gpsloc.parseError()) {
-                                            parsingErrors.add(gpsloc.getError());
-                                        }
-                                } else if (mt.equalsIgnoreCase("GGA")) {
-                                        gpsloc.parseGGA(message);
-                                        if (gpsloc.parseError()) {
-                                            parsingErrors.add(gpsloc.getError());
-                                        }
-                                } else if (mt.equalsIgnoreCase("VTG")) {
-                                        gpsloc.parseVTG(message);
-                                        if (gpsloc.parseError()) {
-                                            parsingErrors.add(gpsloc.getError());
-                                        }
-                                } else if (mt.equalsIgnoreCase("ZDA")) {
-                                        gpsloc.parseZDA(message);
-                                        if (gpsloc.parseError()) {
-                                            parsingErrors.add(gpsloc.getError());
-                                        }
-                                } else if (mt.equalsIgnoreCase("GSA")) {
-                                        gpsloc.parseGSA(message);
-                                        if (gpsloc.parseError()) {
-                                            parsingErrors.add(gpsloc.getError());
-                                        }
-                                }
-                            }
-                        } catch (Exception exc) {
-                            sendCallback(PluginResult.Status.ERROR,
-                                    JSONHelper.errorJSON("NMEA", "Could not parse"
-                                + exc.getMessage() + "- "+message));
-                        }
-
-
-                    } catch (Exception exc) {
-                        sendCallback(PluginResult.Status.ERROR,
-                                JSONHelper.errorJSON("NMEA", "Meine Ausgabe - vielleicht mehr info"
-                                        + exc.getMessage()));
-                    }
-                };
+                    receiveNmea(message, timestamp);
+                }
         	};
         } catch (Exception ex) {
         	status.success = false;
@@ -340,11 +692,107 @@ public final class GPSController implements Runnable {
 
 
 
+    /**
+     * Sends the satellites of GnssStatus updates as column arrays, at most one payload per
+     * satelliteIntervalMs. Updates arrive on the controller thread.
+     */
+    private InitStatus setGnssStatusProvider(){
+        final InitStatus status = new InitStatus();
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.N){
+            status.success = false;
+            status.error = ErrorMessages.SATELLITE_DATA_UNAVAILABLE();
+            return status;
+        }
+
+        _satelliteFeed = new SatelliteFeed(_nmeaOptions.satelliteIntervalMs);
+        _gnssStatusCallback = new GnssStatus.Callback() {
+
+            @Override
+            public void onFirstFix(int ttffMillis) {
+                _satelliteFeed.setTimeToFirstFix(ttffMillis);
+            }
+
+            @Override
+            public void onSatelliteStatusChanged(GnssStatus gnssStatus) {
+                final long now = SystemClock.elapsedRealtime();
+                if(!_satelliteFeed.isDue(now)){
+                    return;
+                }
+                // Carrier frequencies are reported from Android 8.0
+                final boolean carrier = Build.VERSION.SDK_INT >= 26;
+                final int count = gnssStatus.getSatelliteCount();
+                _satelliteFeed.begin();
+                for(int i = 0; i < count; i++){
+                    _satelliteFeed.add(
+                            gnssStatus.getSvid(i),
+                            SatelliteFeed.fromAndroid(gnssStatus.getConstellationType(i)),
+                            gnssStatus.getCn0DbHz(i),
+                            gnssStatus.getElevationDegrees(i),
+                            gnssStatus.getAzimuthDegrees(i),
+                            gnssStatus.usedInFix(i),
+                            carrier && gnssStatus.hasCarrierFrequencyHz(i) ? gnssStatus.getCarrierFrequencyHz(i) : Float.NaN);
+                }
+                sendCallback(PluginResult.Status.OK, _satelliteFeed.write(System.currentTimeMillis(), now));
+            }
+        };
+
+        try{
+            Log.d(TAG, "Starting GnssStatus updates");
+            if(!_locationManager.registerGnssStatusCallback(_gnssStatusCallback, _handler)){
+                status.success = false;
+                status.error = ErrorMessages.GPS_UNAVAILABLE();
+                _gnssStatusCallback = null;
+            }
+        }
+        catch(SecurityException exc){
+            Log.e(TAG, "Unable to start GnssStatus updates. " + exc.getMessage());
+            status.success = false;
+            status.exception = exc.getMessage();
+            _gnssStatusCallback = null;
+        }
+
+        return status;
+    }
+
+    /**
+     * @return true if Locations go to the NMEA engine's arbitrator instead of their own callback
+     */
+    private static boolean isArbitrating(){
+        return _nmeaOptions.arbitrate && _returnLocationData && (_returnNMEAData || _nmeaOptions.replay != null);
+    }
+
+    /**
+     * Hands a Location to the parser thread, where the arbitrator pairs it with its NMEA epoch.
+     */
+    private static void postLocation(Location location){
+        final Handler handler = _parserHandler;
+        if(handler == null){
+            return;
+        }
+        final long time = location.getTime();
+        final double latitude = location.getLatitude();
+        final double longitude = location.getLongitude();
+        final double accuracy = location.hasAccuracy() ? location.getAccuracy() : Double.NaN;
+        final double altitude = location.hasAltitude() ? location.getAltitude() : Double.NaN;
+        final double speed = location.hasSpeed() ? location.getSpeed() : Double.NaN;
+        final double bearing = location.hasBearing() ? location.getBearing() : Double.NaN;
+        final long received = System.currentTimeMillis();
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                _engine.location(time, latitude, longitude, accuracy, altitude, speed, bearing, received);
+            }
+        });
+    }
+
     private InitStatus setLocationListenerGPSProvider(){
         _locationListenerGPSProvider = new LocationListener() {
 
             public void onLocationChanged(Location location) {
-                if (_returnLocationData) {
+                if (isArbitrating()) {
+                    postLocation(location);
+                }
+                else if (_returnLocationData) {
 	                sendCallback(PluginResult.Status.OK,
                             JSONHelper.locationJSON(LocationManager.GPS_PROVIDER, location, false));
 	            }
@@ -370,12 +818,15 @@ public final class GPSController implements Runnable {
                 }
             }
 
+            // The listeners stay registered while the provider is disabled and resume on their own
             public void onProviderEnabled(String provider) {
-                startLocation();
+                Log.d(TAG, "GPS provider enabled");
             }
 
             public void onProviderDisabled(String provider) {
-                stopLocation();
+                Log.w(TAG, ErrorMessages.GPS_UNAVAILABLE().message);
+                sendCallback(PluginResult.Status.ERROR,
+                        JSONHelper.errorJSON(LocationManager.GPS_PROVIDER, ErrorMessages.GPS_UNAVAILABLE()));
             }
         };
 
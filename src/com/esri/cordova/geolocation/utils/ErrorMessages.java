@@ -124,6 +124,55 @@ public class ErrorMessages {
         return err;
     }
 
+    public static Error FLOW_CONTROL_DISABLED(){
+        final Error err = new Error();
+        err.number = "160";
+        err.message = "Flow control credits were sent but flow control is not enabled. Set the credits option and start first";
+
+        return err;
+    }
+
+    public static Error NMEA_BUFFER_OVERFLOW(long dropped, int capacity){
+        final Error err = new Error();
+        err.number = "161";
+        err.message = "NMEA messages arrive faster than they are parsed. " + dropped
+                + " messages dropped so far, consider a larger ringBufferSize than " + capacity;
+
+        return err;
+    }
+
+    public static Error RECORDER_FAILED(String reason){
+        final Error err = new Error();
+        err.number = "162";
+        err.message = "NMEA recorder failed: " + reason;
+
+        return err;
+    }
+
+    public static Error REPLAY_FAILED(String reason){
+        final Error err = new Error();
+        err.number = "163";
+        err.message = "NMEA replay failed: " + reason;
+
+        return err;
+    }
+
+    public static Error STATS_UNAVAILABLE(){
+        final Error err = new Error();
+        err.number = "164";
+        err.message = "Pipeline stats are not available. Call start first";
+
+        return err;
+    }
+
+    public static Error SATELLITE_DATA_UNAVAILABLE(){
+        final Error err = new Error();
+        err.number = "165";
+        err.message = "Satellite data requires GnssStatus, available from Android 7.0 (API level 24)";
+
+        return err;
+    }
+
     public static Error FAILED_THREAD_INTERRUPT(){
         final Error err = new Error();
         err.number = "150";
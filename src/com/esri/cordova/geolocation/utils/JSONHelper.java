@@ -40,6 +40,7 @@ import android.telephony.gsm.GsmCellLocation;
 import android.util.Log;
 
 import com.esri.cordova.geolocation.model.Error;
+import com.esri.cordova.geolocation.model.NMEAEpoch;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -164,7 +165,20 @@ public final class JSONHelper {
     	return json.toString();
     }
 
-    
+    /**
+     * Streams a parsed NMEA epoch into a reusable writer. The epoch is nested as a JSON object
+     * under "message" rather than as an escaped string.
+     * @param provider Indicates where the data is coming from
+     * @param epoch The parsed epoch
+     * @param timestamp The NMEA message timestamp
+     * @param writer Reusable writer, reset by this method
+     * @param precision Maximum decimals for latitude and longitude
+     * @return JSON
+     */
+    public static String nmeaJSON(String provider, NMEAEpoch epoch, long timestamp, JSONWriter writer, int precision) {
+        return GPSLocation.writeMessage(provider, epoch, timestamp, writer, precision).toString();
+    }
+
     public static String nmeaJSON(String provider,ArrayList message,long timestamp) {
     	final JSONObject json = new JSONObject();
     	try {
@@ -448,7 +462,9 @@ public final class JSONHelper {
      * Converts GpsStatus into JSON.
      * @param gpsStatus Send a GpsStatus whenever the GPS fires
      * @return JSON representation of the satellite data
+     * @deprecated GpsStatus is deprecated, GPSController sends GnssStatus updates through SatelliteFeed
      */
+    @Deprecated
     public static String satelliteDataJSON(GpsStatus gpsStatus){
 
         final Calendar calendar = Calendar.getInstance();
@@ -33,6 +33,111 @@ var AdvancedGeolocation = {
 
     kill: function(successCallback, errorCallback) {
         exec(successCallback, errorCallback, "AdvancedGeolocation", "kill", []);
+    },
+
+    /**
+     * Grants flow control credits when the `credits` option is enabled.
+     * @param credits Number of additional callbacks the app is ready to receive, defaults to 1
+     * @param successCallback Receives {credits, pending, dropped}
+     */
+    ack: function(credits, successCallback, errorCallback) {
+        exec(successCallback, errorCallback, "AdvancedGeolocation", "ack", [{credits: credits || 1}]);
+    },
+
+    /**
+     * Starts recording every raw NMEA sentence to segment files in the app's files directory.
+     * @param options Optional {segmentSize, rotateIntervalMs, syncIntervalMs}
+     * @param successCallback Receives {recording, directory, segment, records, dropped}
+     */
+    record: function(options, successCallback, errorCallback) {
+        exec(successCallback, errorCallback, "AdvancedGeolocation", "record", [options || {}]);
+    },
+
+    stopRecording: function(successCallback, errorCallback) {
+        exec(successCallback, errorCallback, "AdvancedGeolocation", "stopRecording", []);
+    },
+
+    /**
+     * @param successCallback Receives an array of {name, path, size, lastModified}, oldest first
+     */
+    listSegments: function(successCallback, errorCallback) {
+        exec(successCallback, errorCallback, "AdvancedGeolocation", "listSegments", []);
+    },
+
+    /**
+     * @param successCallback Receives the NMEA pipeline counters and latency histograms
+     */
+    stats: function(successCallback, errorCallback) {
+        exec(successCallback, errorCallback, "AdvancedGeolocation", "stats", []);
+    },
+
+    /**
+     * Decodes the ArrayBuffer delivered when the `binary` option is enabled.
+     * The record layout must match NMEABinaryEncoder.java.
+     * @param buffer ArrayBuffer holding one or more fixed size epoch records
+     * @returns {Array} Epoch objects using the same property names as the JSON payload
+     */
+    decodeEpochs: function(buffer) {
+        var view = new DataView(buffer);
+        var epochs = [];
+        for (var offset = 0; offset + RECORD_SIZE <= buffer.byteLength; offset += RECORD_SIZE) {
+            if (view.getUint8(offset) !== RECORD_VERSION) {
+                throw new Error("Unsupported NMEA record version " + view.getUint8(offset));
+            }
+            var present = view.getUint32(offset + 4, true);
+            var epoch = {
+                provider: "NMEA",
+                quality: view.getUint8(offset + 1),
+                fixtype: view.getUint8(offset + 2),
+                satelliteCount: view.getUint8(offset + 3),
+                timestamp: view.getFloat64(offset + 8, true),
+                nmeaTimestamp: view.getFloat64(offset + 16, true)
+            };
+            if (present & PRESENT.POSITION) {
+                epoch.latitude = view.getFloat64(offset + 24, true);
+                epoch.longitude = view.getFloat64(offset + 32, true);
+            }
+            readFloat(view, offset, present, PRESENT.ALTITUDE, 40, epoch, "altitude");
+            readFloat(view, offset, present, PRESENT.GEOID_SEPARATION, 44, epoch, "altitudeDifferceEllipsoid");
+            readFloat(view, offset, present, PRESENT.ACCURACY, 48, epoch, "accuracy");
+            readFloat(view, offset, present, PRESENT.SPEED, 52, epoch, "speed");
+            readFloat(view, offset, present, PRESENT.BEARING, 56, epoch, "bearing");
+            readFloat(view, offset, present, PRESENT.ALTITUDE_ACCURACY, 60, epoch, "altitude_accuracy");
+            readFloat(view, offset, present, PRESENT.RTK_ACCURACY, 64, epoch, "rtk_accuracy");
+            readFloat(view, offset, present, PRESENT.RTK_ALTITUDE_ACCURACY, 68, epoch, "rtk_altitude_accuracy");
+            readFloat(view, offset, present, PRESENT.PDOP, 72, epoch, "pdop");
+            readFloat(view, offset, present, PRESENT.HDOP, 76, epoch, "hdop");
+            readFloat(view, offset, present, PRESENT.VDOP, 80, epoch, "vdop");
+            epochs.push(epoch);
+        }
+        return epochs;
+    }
+}
+
+// Binary epoch record, see NMEABinaryEncoder.java
+var RECORD_VERSION = 1;
+var RECORD_SIZE = 88;
+
+// Presence bits, see NMEAEpoch.java
+var PRESENT = {
+    TIMESTAMP: 1,
+    POSITION: 1 << 1,
+    ACCURACY: 1 << 2,
+    SPEED: 1 << 3,
+    BEARING: 1 << 4,
+    ALTITUDE: 1 << 5,
+    GEOID_SEPARATION: 1 << 6,
+    ALTITUDE_ACCURACY: 1 << 7,
+    RTK_ACCURACY: 1 << 8,
+    RTK_ALTITUDE_ACCURACY: 1 << 9,
+    PDOP: 1 << 10,
+    HDOP: 1 << 11,
+    VDOP: 1 << 12
+};
+
+function readFloat(view, offset, present, bit, position, epoch, name) {
+    if (present & bit) {
+        epoch[name] = view.getFloat32(offset + position, true);
     }
 }
 